@@ -0,0 +1,165 @@
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Account-clustered view of a time series dataset
+ *
+ * Positions are the rows sorted by (Account_Key, Year, Month); the rows of
+ * account a occupy positions [offset(a), offset(a + 1)) in month order.
+ * Memory is one int per row (two if a permutation is needed) plus two per
+ * account, against a boxed hash entry per row for a (key, year, month) map,
+ * and a lookup is two binary searches. When the rows are already account-major (the usual CSV layout)
+ * no permutation is stored.
+ */
+public class AccountSeries {
+    private final int[] accountKeys; // Distinct keys, ascending
+    private final int[] offsets;     // accounts + 1
+    private final int[] monthIds;    // Per position: year * 12 + month - 1
+    private final int[] order;       // Position -> row index (null = identity)
+
+    private AccountSeries(int[] accountKeys, int[] offsets, int[] monthIds, int[] order) {
+        this.accountKeys = accountKeys;
+        this.offsets = offsets;
+        this.monthIds = monthIds;
+        this.order = order;
+    }
+
+    /**
+     * Build the layout (stable: rows with the same key and month keep their order)
+     */
+    public static AccountSeries build(int[] keys, int[] years, int[] months) {
+        int n = keys.length;
+        int[] ids = new int[n];
+        boolean sorted = true;
+        for (int i = 0; i < n; i++) {
+            ids[i] = monthId(years[i], months[i]);
+            if (i > 0 && (keys[i] < keys[i - 1] || (keys[i] == keys[i - 1] && ids[i] < ids[i - 1]))) {
+                sorted = false;
+            }
+        }
+
+        int[] order = null;
+        int[] monthIds = ids;
+        int[] sortedKeys = keys;
+        if (!sorted) {
+            order = IntStream.range(0, n).boxed()
+                .sorted((a, b) -> keys[a] != keys[b] ? Integer.compare(keys[a], keys[b])
+                                                     : Integer.compare(ids[a], ids[b]))
+                .mapToInt(Integer::intValue).toArray();
+            monthIds = new int[n];
+            sortedKeys = new int[n];
+            for (int p = 0; p < n; p++) {
+                monthIds[p] = ids[order[p]];
+                sortedKeys[p] = keys[order[p]];
+            }
+        }
+
+        int accounts = 0;
+        for (int p = 0; p < n; p++) {
+            if (p == 0 || sortedKeys[p] != sortedKeys[p - 1]) accounts++;
+        }
+        int[] accountKeys = new int[accounts];
+        int[] offsets = new int[accounts + 1];
+        for (int p = 0, a = 0; p < n; p++) {
+            if (p == 0 || sortedKeys[p] != sortedKeys[p - 1]) {
+                accountKeys[a] = sortedKeys[p];
+                offsets[a++] = p;
+            }
+        }
+        offsets[accounts] = n;
+        return new AccountSeries(accountKeys, offsets, monthIds, order);
+    }
+
+    public static int monthId(int year, int month) {
+        return year * 12 + month - 1;
+    }
+
+    public int accounts() {
+        return accountKeys.length;
+    }
+
+    public int rows() {
+        return monthIds.length;
+    }
+
+    public int accountKey(int account) {
+        return accountKeys[account];
+    }
+
+    /**
+     * First position of an account
+     */
+    public int start(int account) {
+        return offsets[account];
+    }
+
+    /**
+     * One past the last position of an account
+     */
+    public int end(int account) {
+        return offsets[account + 1];
+    }
+
+    /**
+     * Row index (in the dataset) at a position
+     */
+    public int row(int position) {
+        return order != null ? order[position] : position;
+    }
+
+    public int monthId(int position) {
+        return monthIds[position];
+    }
+
+    /**
+     * True if positions and row indices coincide (dataset already clustered)
+     */
+    public boolean isIdentity() {
+        return order == null;
+    }
+
+    /**
+     * Row indices in position order
+     */
+    public int[] order() {
+        if (order != null) {
+            return order.clone();
+        }
+        int[] identity = new int[monthIds.length];
+        Arrays.setAll(identity, i -> i);
+        return identity;
+    }
+
+    /**
+     * Account index of a key, or -1
+     */
+    public int find(int accountKey) {
+        int a = Arrays.binarySearch(accountKeys, accountKey);
+        return a >= 0 ? a : -1;
+    }
+
+    /**
+     * Position of (key, month), the last one if duplicated, or -1
+     */
+    public int position(int accountKey, int year, int month) {
+        int a = find(accountKey);
+        if (a < 0) {
+            return -1;
+        }
+        int id = monthId(year, month);
+        int lo = offsets[a], hi = offsets[a + 1];
+        while (lo < hi) {  // First position with monthId > id
+            int mid = (lo + hi) >>> 1;
+            if (monthIds[mid] <= id) lo = mid + 1; else hi = mid;
+        }
+        return lo > offsets[a] && monthIds[lo - 1] == id ? lo - 1 : -1;
+    }
+
+    /**
+     * Row index of (key, year, month), or -1
+     */
+    public int indexOf(int accountKey, int year, int month) {
+        int p = position(accountKey, year, month);
+        return p >= 0 ? row(p) : -1;
+    }
+}
@@ -0,0 +1,193 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Headless scoring of Account_Key lists
+ *
+ * Keys are read in batches. While one batch is scored (in parallel chunks),
+ * the previous batch's rows are written and the next keys are read, so at
+ * most two batches are held in memory whatever the number of keys.
+ * Each output row has, per target: prediction, previous month value and change.
+ */
+public class BatchScorer {
+    private static final int BATCH_SIZE = 16384;
+    private static final int CHUNK_SIZE = 1024;
+
+    public enum Format {
+        CSV,
+        JSONL
+    }
+
+    private final LinearRegression[] models;
+    private final DataLoader.Dataset[] datasets;
+    private final String[] targets;
+    private final int year;
+    private final int month;
+    private final HorizonForecaster.OutputTransform outputs;
+
+    // Counters of the last run
+    private long scored;
+    private long found;
+    private long invalid;
+
+    /**
+     * @param year Year of the scored month (previous value is taken from the month before)
+     * @param outputs Converts a model output of target t to output units
+     */
+    public BatchScorer(LinearRegression[] models, DataLoader.Dataset[] datasets, int year, int month,
+                       HorizonForecaster.OutputTransform outputs) {
+        this.models = models;
+        this.datasets = datasets;
+        this.year = year;
+        this.month = month;
+        this.outputs = outputs;
+        this.targets = new String[datasets.length];
+        for (int t = 0; t < datasets.length; t++) {
+            targets[t] = datasets[t].targetCol;
+        }
+    }
+
+    /**
+     * Score every key of the input (one Account_Key per line) and write one row per key
+     */
+    public void run(BufferedReader in, Writer out, Format format) throws IOException {
+        scored = 0;
+        found = 0;
+        invalid = 0;
+
+        if (format == Format.CSV) {
+            StringBuilder header = new StringBuilder("Account_Key");
+            for (String target : targets) {
+                header.append(',').append(target).append("_Pred")
+                      .append(',').append(target).append("_Prev")
+                      .append(',').append(target).append("_Change");
+            }
+            out.write(header.append('\n').toString());
+        }
+
+        CompletableFuture<StringBuilder> pending = null;
+        int[] keys;
+        while ((keys = readBatch(in)) != null) {
+            final int[] batch = keys;
+            CompletableFuture<StringBuilder> next = CompletableFuture.supplyAsync(() -> scoreBatch(batch, format));
+            if (pending != null) {
+                out.append(pending.join());
+            }
+            pending = next;
+            scored += batch.length;
+        }
+        if (pending != null) {
+            out.append(pending.join());
+        }
+        out.flush();
+    }
+
+    private int[] readBatch(BufferedReader in) throws IOException {
+        int[] keys = new int[BATCH_SIZE];
+        int count = 0;
+        String line;
+        while (count < BATCH_SIZE && (line = in.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty() || line.equals("Account_Key")) continue;
+            try {
+                int key = Integer.parseInt(line);
+                keys[count++] = key;
+            } catch (NumberFormatException e) {
+                invalid++;
+            }
+        }
+        return count == 0 ? null : Arrays.copyOf(keys, count);
+    }
+
+    private StringBuilder scoreBatch(int[] keys, Format format) {
+        int chunks = (keys.length + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        List<StringBuilder> parts = IntStream.range(0, chunks).parallel()
+            .mapToObj(c -> scoreChunk(keys, c * CHUNK_SIZE, Math.min(keys.length, (c + 1) * CHUNK_SIZE), format))
+            .collect(Collectors.toList());
+        StringBuilder result = new StringBuilder();
+        for (StringBuilder part : parts) {
+            result.append(part);
+        }
+        return result;
+    }
+
+    private StringBuilder scoreChunk(int[] keys, int from, int to, Format format) {
+        StringBuilder out = new StringBuilder((to - from) * 48 * (targets.length + 1));
+        double[] prediction = new double[targets.length];
+        double[] previous = new double[targets.length];
+        int prevYear = month == 1 ? year - 1 : year;
+        int prevMonth = month == 1 ? 12 : month - 1;
+        int foundHere = 0;
+
+        for (int k = from; k < to; k++) {
+            int key = keys[k];
+            boolean any = false;
+            for (int t = 0; t < targets.length; t++) {
+                DataLoader.Dataset dataset = datasets[t];
+                int idx = dataset.indexOf(key, year, month);
+                if (idx < 0) {
+                    prediction[t] = Double.NaN;
+                    continue;
+                }
+                any = true;
+                prediction[t] = outputs.apply(t, models[t].predictSingle(dataset.matrix.getRow(idx)));
+                int prev = dataset.indexOf(key, prevYear, prevMonth);
+                previous[t] = outputs.apply(t, prev >= 0 && dataset.y[prev] != null ? dataset.y[prev] : 0.0);
+            }
+            if (any) foundHere++;
+
+            if (format == Format.CSV) {
+                out.append(key);
+                for (int t = 0; t < targets.length; t++) {
+                    out.append(',');
+                    if (Double.isNaN(prediction[t])) {
+                        out.append(",,");
+                        continue;
+                    }
+                    DecimalText.appendFixed(out, prediction[t]);
+                    out.append(',');
+                    DecimalText.appendFixed(out, previous[t]);
+                    out.append(',');
+                    DecimalText.appendFixed(out, prediction[t] - previous[t]);
+                }
+            } else {
+                out.append("{\"account_key\":").append(key).append(",\"found\":").append(any);
+                for (int t = 0; t < targets.length; t++) {
+                    if (Double.isNaN(prediction[t])) continue;
+                    out.append(",\"").append(targets[t]).append("\":{\"prediction\":");
+                    DecimalText.appendFixed(out, prediction[t]);
+                    out.append(",\"previous\":");
+                    DecimalText.appendFixed(out, previous[t]);
+                    out.append(",\"change\":");
+                    DecimalText.appendFixed(out, prediction[t] - previous[t]);
+                    out.append('}');
+                }
+                out.append('}');
+            }
+            out.append('\n');
+        }
+
+        synchronized (this) {
+            found += foundHere;
+        }
+        return out;
+    }
+
+    public long getScored() {
+        return scored;
+    }
+
+    public synchronized long getFound() {
+        return found;
+    }
+
+    public long getInvalid() {
+        return invalid;
+    }
+}
@@ -0,0 +1,136 @@
+/**
+ * CountSketch of the rows of [1 X | y]: each input row is added, with a random
+ * sign, to one of s sketch rows chosen by hashing its index
+ *
+ * One streaming pass costs O(nnz(X)) instead of the O(Σ nnz_i²) of a Gram
+ * pass, and the sketch needs s x (n + 1) doubles whatever the row count.
+ * With s ≥ (d² + d) / (ε² δ) rows the sketch is an ε-subspace embedding of
+ * the column space with probability 1 - δ (Clarkson-Woodruff / Nelson-Nguyen),
+ * so the ridge solution on the sketch has √(ridge objective) within
+ * (1 + ε) / (1 - ε) of the exact one. That worst-case bound is loose: in
+ * practice O(d / ε²) rows give distortion about ε, which is the default,
+ * and the solver checks the result a posteriori.
+ * Row hashes depend only on (seed, row index): the sketch is reproducible and
+ * needs no random state per row.
+ */
+public class CountSketch {
+    public static final double FAILURE_PROBABILITY = 0.1; // δ used for the reported bound
+    private static final double DEFAULT_EPSILON = 0.5;
+    private static final int OVERSAMPLING = 10;           // Default rows = OVERSAMPLING · d / ε²
+
+    private final int sketchRows;
+    private final int dim;          // numFeatures + 1 (bias)
+    private final double[][] sa;    // S [1 X]
+    private final double[] sb;      // S y
+    private final long seed;
+    private long count;
+
+    public CountSketch(int sketchRows, int numFeatures, long seed) {
+        if (sketchRows < 1) {
+            throw new IllegalArgumentException("Sketch needs at least 1 row, got " + sketchRows);
+        }
+        this.sketchRows = sketchRows;
+        this.dim = numFeatures + 1;
+        this.sa = new double[sketchRows][dim];
+        this.sb = new double[sketchRows];
+        this.seed = seed;
+    }
+
+    /**
+     * Sketch rows for a typical distortion of ε = 0.5, O(d / ε²)
+     */
+    public static int defaultRows(int numFeatures) {
+        long d = numFeatures + 2; // columns of [1 X | y]
+        return (int) Math.min(Integer.MAX_VALUE / 2, Math.ceil(OVERSAMPLING * d / (DEFAULT_EPSILON * DEFAULT_EPSILON)));
+    }
+
+    /**
+     * Sketch rows for the worst-case guarantee of distortion ε = 0.5 with probability 1 - δ
+     */
+    public static long guaranteedRows(int numFeatures) {
+        double d = numFeatures + 2;
+        return (long) Math.ceil((d * d + d) / (DEFAULT_EPSILON * DEFAULT_EPSILON * FAILURE_PROBABILITY));
+    }
+
+    /**
+     * Add row i of X with target y
+     */
+    public void add(FeatureMatrix X, int i, double y) {
+        long h = mix(seed + i);
+        int row = (int) Long.remainderUnsigned(h >>> 1, sketchRows);
+        double sign = (h & 1) == 0 ? 1.0 : -1.0;
+        X.addRowTo(i, sign, sa[row]);
+        sb[row] += sign * y;
+        count++;
+    }
+
+    /**
+     * (S A)^T (S A), flat dim x dim
+     */
+    public double[] gram() {
+        double[] result = new double[dim * dim];
+        for (double[] row : sa) {
+            for (int i = 0; i < dim; i++) {
+                double ri = row[i];
+                if (ri == 0.0) continue;
+                int offset = i * dim;
+                for (int j = i; j < dim; j++) {
+                    result[offset + j] += ri * row[j];
+                }
+            }
+        }
+        for (int i = 0; i < dim; i++) {
+            for (int j = 0; j < i; j++) {
+                result[i * dim + j] = result[j * dim + i];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * (S A)^T (S y)
+     */
+    public double[] rhs() {
+        double[] result = new double[dim];
+        for (int r = 0; r < sketchRows; r++) {
+            double value = sb[r];
+            if (value == 0.0) continue;
+            for (int j = 0; j < dim; j++) {
+                result[j] += sa[r][j] * value;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Worst-case embedding distortion ε guaranteed with probability 1 - δ (≥ 1 means no guarantee)
+     * The columns of [1 X | y] are embedded, hence d + 1
+     */
+    public double distortion() {
+        double d = dim + 1;
+        return Math.sqrt((d * d + d) / (sketchRows * FAILURE_PROBABILITY));
+    }
+
+    /**
+     * Worst-case bound on √f(θ_sketch) / √f(θ*), f(θ) = ||A θ - y||² + λ||θ||², or +∞ when ε ≥ 1
+     */
+    public double residualBound() {
+        double eps = distortion();
+        return eps < 1 ? (1 + eps) / (1 - eps) : Double.POSITIVE_INFINITY;
+    }
+
+    public int getSketchRows() {
+        return sketchRows;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    // SplitMix64 finalizer
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,239 @@
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * K-fold cross-validation and ridge λ sweep based on Gram matrices
+ *
+ * - Each fold's X^T X / X^T y is accumulated once (folds in parallel)
+ * - Training Gram of fold f = total - fold f (no second pass over the rows)
+ * - The training Gram is eigendecomposed once per fold: X^T X = Q Λ Q^T,
+ *   so θ(λ) = Q (Λ + λI)^(-1) Q^T X^T y costs O(n²) per λ
+ * - Validation MSE is computed from the held-out fold's Gram, also O(n²) per λ
+ */
+public class CrossValidator {
+
+    /**
+     * Default λ grid: 1e-6 ... 1e2, two values per decade
+     */
+    public static double[] defaultLambdaGrid() {
+        double[] grid = new double[17];
+        for (int i = 0; i < grid.length; i++) {
+            grid[i] = Math.pow(10, -6 + i * 0.5);
+        }
+        return grid;
+    }
+
+    /**
+     * Run k-fold cross-validation over a grid of ridge strengths
+     * Folds are contiguous row blocks, like the ordered train/val/test split
+     * @param X Feature matrix (m x n), without bias column
+     * @param y Target vector
+     * @param k Number of folds
+     * @param lambdas Ridge strengths to evaluate
+     */
+    public static CVResult crossValidate(double[][] X, double[] y, int k, double[] lambdas) {
+        return crossValidate(new DenseFeatureMatrix(X), y, k, lambdas);
+    }
+
+    /**
+     * Run k-fold cross-validation on any feature storage (dense or sparse)
+     */
+    public static CVResult crossValidate(FeatureMatrix X, double[] y, int k, double[] lambdas) {
+        int m = X.rows();
+        int n = X.cols();
+        if (k < 2 || k > m) {
+            throw new IllegalArgumentException("Number of folds must be in [2, " + m + "], got " + k);
+        }
+
+        // Per-fold Gram matrices, one pass over the rows
+        GramMatrix[] foldGrams = new GramMatrix[k];
+        IntStream.range(0, k).parallel().forEach(f -> {
+            GramMatrix gram = new GramMatrix(n);
+            gram.addAll(X, y, foldStart(f, k, m), foldStart(f + 1, k, m));
+            foldGrams[f] = gram;
+        });
+
+        return crossValidate(foldGrams, lambdas);
+    }
+
+    /**
+     * Run k-fold cross-validation from the Gram matrices of the k folds
+     * (e.g. accumulated by separate workers)
+     */
+    public static CVResult crossValidate(GramMatrix[] foldGrams, double[] lambdas) {
+        int k = foldGrams.length;
+        GramMatrix total = new GramMatrix(foldGrams[0].getDim() - 1);
+        for (GramMatrix gram : foldGrams) {
+            total.merge(gram);
+        }
+
+        // Per fold: eigendecompose once, then sweep λ
+        double[][] foldMSE = new double[k][];
+        IntStream.range(0, k).parallel().forEach(f -> {
+            GramMatrix train = total.copy();
+            train.subtract(foldGrams[f]);
+            foldMSE[f] = sweepLambdas(train, foldGrams[f], lambdas);
+        });
+
+        return new CVResult(lambdas, foldMSE);
+    }
+
+    static int foldStart(int fold, int k, int m) {
+        return (int) ((long) fold * m / k);
+    }
+
+    /**
+     * Validation MSE on the held-out block for every λ
+     */
+    private static double[] sweepLambdas(GramMatrix train, GramMatrix validation, double[] lambdas) {
+        int d = train.getDim();
+        double[][] Q = new double[d][d];
+        double[] eigenvalues = symmetricEigen(train.getXtX(), Q);
+
+        // c = Q^T * X^T y
+        double[] xty = train.getXty();
+        double[] c = new double[d];
+        for (int j = 0; j < d; j++) {
+            double sum = 0;
+            for (int i = 0; i < d; i++) {
+                sum += Q[i][j] * xty[i];
+            }
+            c[j] = sum;
+        }
+
+        double[] mse = new double[lambdas.length];
+        double[] theta = new double[d];
+        double[] z = new double[d];
+        for (int l = 0; l < lambdas.length; l++) {
+            // θ = Q * (Λ + λI)^(-1) * c
+            for (int j = 0; j < d; j++) {
+                z[j] = c[j] / (eigenvalues[j] + lambdas[l]);
+            }
+            for (int i = 0; i < d; i++) {
+                double sum = 0;
+                for (int j = 0; j < d; j++) {
+                    sum += Q[i][j] * z[j];
+                }
+                theta[i] = sum;
+            }
+            mse[l] = validation.sumSquaredError(theta) / validation.getCount();
+        }
+        return mse;
+    }
+
+    /**
+     * Eigendecomposition of a symmetric matrix (cyclic Jacobi rotations)
+     * @param A Symmetric matrix, destroyed during the computation
+     * @param V Output: eigenvectors as columns
+     * @return Eigenvalues (same order as the columns of V)
+     */
+    static double[] symmetricEigen(double[][] A, double[][] V) {
+        int n = A.length;
+        for (int i = 0; i < n; i++) {
+            Arrays.fill(V[i], 0.0);
+            V[i][i] = 1.0;
+        }
+
+        for (int sweep = 0; sweep < 100; sweep++) {
+            double offDiagonal = 0;
+            double diagonal = 0;
+            for (int i = 0; i < n; i++) {
+                diagonal += A[i][i] * A[i][i];
+                for (int j = i + 1; j < n; j++) {
+                    offDiagonal += A[i][j] * A[i][j];
+                }
+            }
+            if (offDiagonal <= 1e-30 * diagonal) {
+                break;
+            }
+
+            for (int p = 0; p < n - 1; p++) {
+                for (int q = p + 1; q < n; q++) {
+                    double apq = A[p][q];
+                    if (Math.abs(apq) < 1e-300) continue;
+
+                    // Rotation angle that zeroes A[p][q]
+                    double theta = (A[q][q] - A[p][p]) / (2 * apq);
+                    double t = Math.signum(theta) / (Math.abs(theta) + Math.sqrt(theta * theta + 1));
+                    if (theta == 0) t = 1;
+                    double cos = 1 / Math.sqrt(t * t + 1);
+                    double sin = t * cos;
+
+                    for (int k = 0; k < n; k++) {
+                        double akp = A[k][p];
+                        double akq = A[k][q];
+                        A[k][p] = cos * akp - sin * akq;
+                        A[k][q] = sin * akp + cos * akq;
+                    }
+                    for (int k = 0; k < n; k++) {
+                        double apk = A[p][k];
+                        double aqk = A[q][k];
+                        A[p][k] = cos * apk - sin * aqk;
+                        A[q][k] = sin * apk + cos * aqk;
+                    }
+                    for (int k = 0; k < n; k++) {
+                        double vkp = V[k][p];
+                        double vkq = V[k][q];
+                        V[k][p] = cos * vkp - sin * vkq;
+                        V[k][q] = sin * vkp + cos * vkq;
+                    }
+                }
+            }
+        }
+
+        double[] eigenvalues = new double[n];
+        for (int i = 0; i < n; i++) {
+            eigenvalues[i] = A[i][i];
+        }
+        return eigenvalues;
+    }
+
+    /**
+     * Cross-validation curves and the best λ
+     */
+    public static class CVResult {
+        public double[] lambdas;
+        public double[][] foldMSE;  // [fold][lambda]
+        public double[] meanMSE;
+        public double[] stdMSE;
+        public int bestIndex;
+        public double bestLambda;
+
+        public CVResult(double[] lambdas, double[][] foldMSE) {
+            this.lambdas = lambdas;
+            this.foldMSE = foldMSE;
+            this.meanMSE = new double[lambdas.length];
+            this.stdMSE = new double[lambdas.length];
+
+            int k = foldMSE.length;
+            for (int l = 0; l < lambdas.length; l++) {
+                double sum = 0;
+                for (int f = 0; f < k; f++) {
+                    sum += foldMSE[f][l];
+                }
+                double mean = sum / k;
+                double var = 0;
+                for (int f = 0; f < k; f++) {
+                    var += Math.pow(foldMSE[f][l] - mean, 2);
+                }
+                meanMSE[l] = mean;
+                stdMSE[l] = Math.sqrt(var / (k - 1));
+                if (mean < meanMSE[bestIndex]) {
+                    bestIndex = l;
+                }
+            }
+            this.bestLambda = lambdas[bestIndex];
+        }
+
+        /**
+         * Print the CV curve (mean ± std of validation MSE per λ)
+         */
+        public void print(String modelName) {
+            System.out.println("[" + modelName + "] " + foldMSE.length + "-fold CV curve:");
+            for (int l = 0; l < lambdas.length; l++) {
+                System.out.printf("  λ = %-10.3g  MSE = %.6f ± %.6f%s\n",
+                                 lambdas[l], meanMSE[l], stdMSE[l], l == bestIndex ? "  <- best" : "");
+            }
+        }
+    }
+}
@@ -1,10 +1,14 @@
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 /**
  * Data loader for time series format
@@ -12,14 +16,59 @@ import java.util.Map;
  */
 public class DataLoader {
     
+    /**
+     * In-memory layout of the feature block
+     */
+    public enum Storage {
+        DENSE,   // double[][] (default)
+        SPARSE,  // CSR, only non-zero values are stored
+        FLOAT32, // float[][], half the memory of DENSE; arithmetic stays in double
+        OFF_HEAP, // Direct buffers outside the Java heap (not scanned by the GC)
+        MAPPED,  // Memory-mapped file in spending.mapDir, paged in and out by the OS
+        ENCODED  // Per-column compression (dictionary / bit-packing / XOR), cached on disk in spending.mapDir
+    }
+    
+    // Directory of the backing files for Storage.MAPPED and the cache files of Storage.ENCODED
+    private static final String MAP_DIR = System.getProperty("spending.mapDir", System.getProperty("java.io.tmpdir"));
+    
     /**
      * Load time series dataset
      */
     public static Dataset loadFromCSV(String filename, String targetCol) throws IOException {
+        return loadFromCSV(filename, targetCol, true);
+    }
+    
+    /**
+     * Load time series dataset, optionally without console output
+     * (used when loading in the background while the user is prompted)
+     */
+    public static Dataset loadFromCSV(String filename, String targetCol, boolean verbose) throws IOException {
+        return loadFromCSV(filename, targetCol, verbose, Storage.DENSE);
+    }
+    
+    /**
+     * Load time series dataset into the given feature storage
+     */
+    public static Dataset loadFromCSV(String filename, String targetCol, boolean verbose,
+                                      Storage storage) throws IOException {
+        // Encoded datasets are cached; the CSV is parsed again only when it changes
+        if (storage == Storage.ENCODED) {
+            File cache = encodedFile(filename, targetCol);
+            Dataset cached = EncodedDatasetFile.read(cache, fingerprint(filename));
+            if (cached != null) {
+                if (verbose) {
+                    System.out.println("Loading: " + cache + " (encoded cache of " + filename + ")");
+                    System.out.println("Loaded " + cached.matrix.rows() + " rows with " + cached.matrix.cols() + " features");
+                    printStorageInfo(storage, cached.matrix);
+                    System.out.println();
+                }
+                return cached;
+            }
+        }
+        
         List<Integer> accountKeysList = new ArrayList<>();
         List<Integer> yearsList = new ArrayList<>();
         List<Integer> monthsList = new ArrayList<>();
-        List<double[]> featuresList = new ArrayList<>();
         List<Double> targetList = new ArrayList<>();
         
         BufferedReader br = new BufferedReader(new FileReader(filename));
@@ -35,22 +84,22 @@ public class DataLoader {
             colIndexMap.put(headerCols[i].trim(), i);
         }
         
-        System.out.println("Loading: " + filename);
-        System.out.println("Target column: " + targetCol);
+        if (verbose) {
+            System.out.println("Loading: " + filename);
+            System.out.println("Target column: " + targetCol);
+        }
         
         // Identify feature columns
-        List<String> featureColNames = new ArrayList<>();
-        for (String col : headerCols) {
-            col = col.trim();
-            if (!col.equals("Account_Key") && !col.equals("Year") && 
-                !col.equals("Month") && !col.equals("Quarter") && 
-                !col.equals(targetCol)) {
-                featureColNames.add(col);
-            }
+        List<String> featureColNames = featureColumns(headerCols, targetCol);
+        
+        if (verbose) {
+            System.out.println("Number of features: " + featureColNames.size());
+            System.out.println();
         }
         
-        System.out.println("Number of features: " + featureColNames.size());
-        System.out.println();
+        FeatureMatrix.Builder featureBuilder = newBuilder(storage, featureColNames.size(), filename);
+        StreamingStats targetStats = new StreamingStats();
+        double[] features = new double[featureColNames.size()];
         
         // Read data
         int lineCount = 0;
@@ -76,7 +125,6 @@ public class DataLoader {
                 }
                 
                 // Read features
-                double[] features = new double[featureColNames.size()];
                 for (int i = 0; i < featureColNames.size(); i++) {
                     String featureCol = featureColNames.get(i);
                     features[i] = Double.parseDouble(values[colIndexMap.get(featureCol)]);
@@ -85,8 +133,11 @@ public class DataLoader {
                 accountKeysList.add(accountKey);
                 yearsList.add(year);
                 monthsList.add(month);
-                featuresList.add(features);
+                featureBuilder.addRow(features);
                 targetList.add(target);
+                if (target != null) {
+                    targetStats.add(target);
+                }
                 
             } catch (Exception e) {
                 System.err.println("Error parsing line " + lineCount);
@@ -100,15 +151,177 @@ public class DataLoader {
         int[] accountKeys = accountKeysList.stream().mapToInt(Integer::intValue).toArray();
         int[] years = yearsList.stream().mapToInt(Integer::intValue).toArray();
         int[] months = monthsList.stream().mapToInt(Integer::intValue).toArray();
-        double[][] X = featuresList.toArray(new double[0][]);
+        FeatureMatrix matrix = featureBuilder.build();
         Double[] yBoxed = targetList.toArray(new Double[0]);
         
-        System.out.println("Loaded " + X.length + " rows with " + X[0].length + " features");
-        System.out.println("Training rows (target != null): " + (X.length - futureCount));
-        System.out.println("Future rows (target = null): " + futureCount);
-        System.out.println();
+        if (verbose) {
+            System.out.println("Loaded " + matrix.rows() + " rows with " + matrix.cols() + " features");
+            System.out.println("Training rows (target != null): " + (matrix.rows() - futureCount));
+            System.out.println("Future rows (target = null): " + futureCount);
+            if (storage != Storage.DENSE) {
+                printStorageInfo(storage, matrix);
+            }
+            System.out.println();
+        }
         
-        return new Dataset(accountKeys, years, months, X, yBoxed, targetCol);
+        Dataset dataset = new Dataset(accountKeys, years, months, matrix, yBoxed, targetCol);
+        dataset.featureNames = featureColNames.toArray(new String[0]);
+        dataset.targetStats = targetStats;
+        if (storage == Storage.ENCODED) {
+            EncodedDatasetFile.write(encodedFile(filename, targetCol), fingerprint(filename), dataset);
+        }
+        return dataset;
+    }
+    
+    /**
+     * Feature columns of a CSV header: every column except the identifiers,
+     * Quarter and the target
+     */
+    static List<String> featureColumns(String[] headerCols, String targetCol) {
+        List<String> featureColNames = new ArrayList<>();
+        for (String col : headerCols) {
+            col = col.trim();
+            if (!col.equals("Account_Key") && !col.equals("Year") && 
+                !col.equals("Month") && !col.equals("Quarter") && 
+                !col.equals(targetCol)) {
+                featureColNames.add(col);
+            }
+        }
+        return featureColNames;
+    }
+    
+    /**
+     * Cache file of an encoded dataset
+     */
+    public static File encodedFile(String filename, String targetCol) {
+        return new File(MAP_DIR, new File(filename).getName() + "." + targetCol + ".enc");
+    }
+    
+    /**
+     * Compute statistics for some columns of a CSV in one pass
+     * Lines are parsed in parallel chunks whose statistics are merged
+     * @return column name -> statistics (empty/NaN values are skipped)
+     */
+    public static Map<String, StreamingStats> scanColumnStats(String filename, String... columns) 
+            throws IOException {
+        final int chunkLines = 65536;
+        Map<String, StreamingStats> result = new HashMap<>();
+        for (String column : columns) {
+            result.put(column, new StreamingStats());
+        }
+        
+        try (BufferedReader br = new BufferedReader(new FileReader(filename))) {
+            String[] headerCols = br.readLine().split(",");
+            int[] colIdx = new int[columns.length];
+            for (int c = 0; c < columns.length; c++) {
+                colIdx[c] = -1;
+                for (int i = 0; i < headerCols.length; i++) {
+                    if (headerCols[i].trim().equals(columns[c])) colIdx[c] = i;
+                }
+                if (colIdx[c] < 0) {
+                    throw new IOException("Column not found in " + filename + ": " + columns[c]);
+                }
+            }
+            
+            List<String> chunk = new ArrayList<>(chunkLines);
+            List<List<String>> batch = new ArrayList<>();
+            String line;
+            while (true) {
+                line = br.readLine();
+                if (line != null) {
+                    chunk.add(line);
+                    if (chunk.size() < chunkLines) continue;
+                }
+                if (!chunk.isEmpty()) {
+                    batch.add(chunk);
+                    chunk = new ArrayList<>(chunkLines);
+                }
+                // Scan a batch of chunks in parallel, then merge in chunk order
+                if (batch.size() == Runtime.getRuntime().availableProcessors() || (line == null && !batch.isEmpty())) {
+                    List<StreamingStats[]> partials = batch.parallelStream()
+                        .map(lines -> scanChunk(lines, colIdx))
+                        .collect(Collectors.toList());
+                    for (StreamingStats[] partial : partials) {
+                        for (int c = 0; c < columns.length; c++) {
+                            result.get(columns[c]).merge(partial[c]);
+                        }
+                    }
+                    batch.clear();
+                }
+                if (line == null) break;
+            }
+        }
+        return result;
+    }
+    
+    private static StreamingStats[] scanChunk(List<String> lines, int[] colIdx) {
+        StreamingStats[] stats = new StreamingStats[colIdx.length];
+        for (int c = 0; c < colIdx.length; c++) {
+            stats[c] = new StreamingStats();
+        }
+        for (String line : lines) {
+            String[] values = line.split(",", -1);
+            for (int c = 0; c < colIdx.length; c++) {
+                if (colIdx[c] >= values.length) continue;
+                String value = values[colIdx[c]].trim();
+                if (value.isEmpty() || value.equalsIgnoreCase("nan")) continue;
+                try {
+                    stats[c].add(Double.parseDouble(value));
+                } catch (NumberFormatException e) {
+                    // Non-numeric cell, not part of the statistics
+                }
+            }
+        }
+        return stats;
+    }
+    
+    static FeatureMatrix.Builder newBuilder(Storage storage, int cols, String filename) {
+        switch (storage) {
+            case SPARSE:
+                return new SparseFeatureMatrix.Builder(cols);
+            case FLOAT32:
+                return new FloatFeatureMatrix.Builder(cols);
+            case OFF_HEAP:
+                return new OffHeapFeatureMatrix.Builder(cols);
+            case ENCODED:
+                return new EncodedFeatureMatrix.Builder(cols);
+            case MAPPED:
+                // Unique per builder: other processes may have their own file for the same CSV mapped
+                File file;
+                try {
+                    file = File.createTempFile(new File(filename).getName() + ".", ".features", new File(MAP_DIR));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                file.deleteOnExit();
+                return new OffHeapFeatureMatrix.Builder(cols, file);
+            default:
+                return new DenseFeatureMatrix.Builder(cols);
+        }
+    }
+    
+    private static void printStorageInfo(Storage storage, FeatureMatrix matrix) {
+        long cells = (long) matrix.rows() * matrix.cols();
+        long denseBytes = cells * 8;
+        System.out.printf("Storage: %s, non-zeros %,d / %,d (%.1f%%), %.1f MB vs %.1f MB dense\n",
+                         storage, matrix.nonZeros(), cells, 100.0 * matrix.nonZeros() / Math.max(1, cells),
+                         matrix.memoryBytes() / 1e6, denseBytes / 1e6);
+        if (matrix instanceof EncodedFeatureMatrix) {
+            System.out.println("Encodings: " + ((EncodedFeatureMatrix) matrix).encodingSummary());
+        }
+        if (matrix instanceof OffHeapFeatureMatrix) {
+            System.out.printf("Off-heap: %.1f MB outside the Java heap, %.1f KB on heap\n",
+                             matrix.memoryBytes() / 1e6, ((OffHeapFeatureMatrix) matrix).heapBytes() / 1e3);
+        }
+    }
+    
+    /**
+     * Cheap fingerprint of a data file (size + last modified time)
+     * Used to detect when stored metrics no longer match the dataset
+     */
+    public static long fingerprint(String filename) {
+        File file = new File(filename);
+        return file.length() * 31 + file.lastModified();
     }
     
     /**
@@ -118,6 +331,16 @@ public class DataLoader {
     public static Dataset[] splitTrainValTest(Dataset dataset, 
                                               double trainRatio, 
                                               double valRatio) {
+        return splitTrainValTest(dataset, trainRatio, valRatio, true);
+    }
+    
+    /**
+     * Split data into train/validation/test sets, optionally without console output
+     */
+    public static Dataset[] splitTrainValTest(Dataset dataset, 
+                                              double trainRatio, 
+                                              double valRatio,
+                                              boolean verbose) {
         // Filter out future rows (target = null)
         List<Integer> trainingIndices = new ArrayList<>();
         for (int i = 0; i < dataset.y.length; i++) {
@@ -131,72 +354,18 @@ public class DataLoader {
         int valSize = (int) (totalTraining * valRatio);
         int testSize = totalTraining - trainSize - valSize;
         
-        System.out.println("Splitting training data:");
-        System.out.println("  Train: " + trainSize + " (" + (trainRatio * 100) + "%)");
-        System.out.println("  Validation: " + valSize + " (" + (valRatio * 100) + "%)");
-        System.out.println("  Test: " + testSize + " (" + ((1 - trainRatio - valRatio) * 100) + "%)");
-        
-        // Create train set
-        int[] accountKeys_train = new int[trainSize];
-        int[] years_train = new int[trainSize];
-        int[] months_train = new int[trainSize];
-        double[][] X_train = new double[trainSize][];
-        double[] y_train = new double[trainSize];
-        
-        for (int i = 0; i < trainSize; i++) {
-            int idx = trainingIndices.get(i);
-            accountKeys_train[i] = dataset.accountKeys[idx];
-            years_train[i] = dataset.years[idx];
-            months_train[i] = dataset.months[idx];
-            X_train[i] = dataset.X[idx];
-            y_train[i] = dataset.y[idx];
-        }
-        
-        // Create validation set
-        int[] accountKeys_val = new int[valSize];
-        int[] years_val = new int[valSize];
-        int[] months_val = new int[valSize];
-        double[][] X_val = new double[valSize][];
-        double[] y_val = new double[valSize];
-        
-        for (int i = 0; i < valSize; i++) {
-            int idx = trainingIndices.get(trainSize + i);
-            accountKeys_val[i] = dataset.accountKeys[idx];
-            years_val[i] = dataset.years[idx];
-            months_val[i] = dataset.months[idx];
-            X_val[i] = dataset.X[idx];
-            y_val[i] = dataset.y[idx];
+        if (verbose) {
+            System.out.println("Splitting training data:");
+            System.out.println("  Train: " + trainSize + " (" + (trainRatio * 100) + "%)");
+            System.out.println("  Validation: " + valSize + " (" + (valRatio * 100) + "%)");
+            System.out.println("  Test: " + testSize + " (" + ((1 - trainRatio - valRatio) * 100) + "%)");
         }
         
-        // Create test set
-        int[] accountKeys_test = new int[testSize];
-        int[] years_test = new int[testSize];
-        int[] months_test = new int[testSize];
-        double[][] X_test = new double[testSize][];
-        double[] y_test = new double[testSize];
-        
-        for (int i = 0; i < testSize; i++) {
-            int idx = trainingIndices.get(trainSize + valSize + i);
-            accountKeys_test[i] = dataset.accountKeys[idx];
-            years_test[i] = dataset.years[idx];
-            months_test[i] = dataset.months[idx];
-            X_test[i] = dataset.X[idx];
-            y_test[i] = dataset.y[idx];
-        }
-        
-        // Convert back to Double[] for compatibility
-        Double[] y_train_boxed = new Double[trainSize];
-        Double[] y_val_boxed = new Double[valSize];
-        Double[] y_test_boxed = new Double[testSize];
-        
-        for (int i = 0; i < trainSize; i++) y_train_boxed[i] = y_train[i];
-        for (int i = 0; i < valSize; i++) y_val_boxed[i] = y_val[i];
-        for (int i = 0; i < testSize; i++) y_test_boxed[i] = y_test[i];
-        
+        int[] indices = trainingIndices.stream().mapToInt(Integer::intValue).toArray();
         return new Dataset[] {
-            new Dataset(accountKeys_train, years_train, months_train, X_train, y_train_boxed, dataset.targetCol),
-            new Dataset(accountKeys_val, years_val, months_val, X_val, y_val_boxed, dataset.targetCol),
-            new Dataset(accountKeys_test, years_test, months_test, X_test, y_test_boxed, dataset.targetCol)
+            dataset.subset(Arrays.copyOfRange(indices, 0, trainSize)),
+            dataset.subset(Arrays.copyOfRange(indices, trainSize, trainSize + valSize)),
+            dataset.subset(Arrays.copyOfRange(indices, trainSize + valSize, totalTraining))
         };
     }
     
@@ -211,25 +380,7 @@ public class DataLoader {
             }
         }
         
-        int futureSize = futureIndices.size();
-        
-        int[] accountKeys_future = new int[futureSize];
-        int[] years_future = new int[futureSize];
-        int[] months_future = new int[futureSize];
-        double[][] X_future = new double[futureSize][];
-        Double[] y_future = new Double[futureSize];
-        
-        for (int i = 0; i < futureSize; i++) {
-            int idx = futureIndices.get(i);
-            accountKeys_future[i] = dataset.accountKeys[idx];
-            years_future[i] = dataset.years[idx];
-            months_future[i] = dataset.months[idx];
-            X_future[i] = dataset.X[idx];
-            y_future[i] = null;
-        }
-        
-        return new Dataset(accountKeys_future, years_future, months_future, 
-                          X_future, y_future, dataset.targetCol);
+        return dataset.subset(futureIndices.stream().mapToInt(Integer::intValue).toArray());
     }
     
     /**
@@ -239,9 +390,15 @@ public class DataLoader {
         public int[] accountKeys;
         public int[] years;
         public int[] months;
-        public double[][] X;
+        public double[][] X;          // Dense rows (null when another storage is used)
+        public FeatureMatrix matrix;  // Feature block in its actual storage format
         public Double[] y;  // Using Double to allow null for future predictions
         public String targetCol;
+        public String[] featureNames; // Column names of the feature block (may be null)
+        public StreamingStats targetStats; // Target statistics from the load pass (may be null)
+        
+        // Account-clustered layout with per-account offsets, built on first lookup
+        private AccountSeries series;
         
         public Dataset(int[] accountKeys, int[] years, int[] months,
                       double[][] X, Double[] y, String targetCol) {
@@ -249,10 +406,76 @@ public class DataLoader {
             this.years = years;
             this.months = months;
             this.X = X;
+            this.matrix = new DenseFeatureMatrix(X);
             this.y = y;
             this.targetCol = targetCol;
         }
         
+        public Dataset(int[] accountKeys, int[] years, int[] months,
+                      FeatureMatrix matrix, Double[] y, String targetCol) {
+            this.accountKeys = accountKeys;
+            this.years = years;
+            this.months = months;
+            this.X = matrix instanceof DenseFeatureMatrix ? ((DenseFeatureMatrix) matrix).getArray() : null;
+            this.matrix = matrix;
+            this.y = y;
+            this.targetCol = targetCol;
+        }
+        
+        /**
+         * New dataset with the given rows (feature storage format is kept)
+         */
+        public Dataset subset(int[] indices) {
+            int size = indices.length;
+            int[] accountKeysSubset = new int[size];
+            int[] yearsSubset = new int[size];
+            int[] monthsSubset = new int[size];
+            Double[] ySubset = new Double[size];
+            
+            for (int i = 0; i < size; i++) {
+                int idx = indices[i];
+                accountKeysSubset[i] = accountKeys[idx];
+                yearsSubset[i] = years[idx];
+                monthsSubset[i] = months[idx];
+                ySubset[i] = y[idx];
+            }
+            
+            Dataset result = new Dataset(accountKeysSubset, yearsSubset, monthsSubset,
+                                         matrix.selectRows(indices), ySubset, targetCol);
+            result.featureNames = featureNames;
+            return result;
+        }
+        
+        /**
+         * Index of a feature column by name, or -1 if not present
+         */
+        public int featureIndex(String name) {
+            if (featureNames != null) {
+                for (int i = 0; i < featureNames.length; i++) {
+                    if (featureNames[i].equals(name)) return i;
+                }
+            }
+            return -1;
+        }
+        
+        /**
+         * Find the row for an account in a given month
+         * @return row index, or -1 if the account has no row for that month
+         */
+        public int indexOf(int accountKey, int year, int month) {
+            return getSeries().indexOf(accountKey, year, month);
+        }
+        
+        /**
+         * Build the (Account_Key, Year, Month) layout if it does not exist yet
+         */
+        public synchronized AccountSeries getSeries() {
+            if (series == null) {
+                series = AccountSeries.build(accountKeys, years, months);
+            }
+            return series;
+        }
+        
         /**
          * Convert y to primitive double[] (only non-null values)
          */
@@ -0,0 +1,23 @@
+/**
+ * Number text for the CSV and JSON writers (BatchScorer, HorizonForecaster)
+ *
+ * Appends straight to the output buffer, without String.format or a locale,
+ * so every writer prints the same value the same way.
+ */
+public class DecimalText {
+    private DecimalText() {
+    }
+
+    /**
+     * Plain decimal with 2 digits (no exponent, no locale)
+     */
+    public static void appendFixed(StringBuilder out, double value) {
+        long cents = Math.round(value * 100);
+        if (cents < 0) {
+            out.append('-');
+            cents = -cents;
+        }
+        long fraction = cents % 100;
+        out.append(cents / 100).append('.').append(fraction < 10 ? "0" : "").append(fraction);
+    }
+}
@@ -0,0 +1,117 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Dense feature storage (double[][]), the original Dataset layout
+ */
+public class DenseFeatureMatrix implements FeatureMatrix {
+    private final double[][] X;
+    private final int cols;
+
+    public DenseFeatureMatrix(double[][] X) {
+        this.X = X;
+        this.cols = X.length > 0 ? X[0].length : 0;
+    }
+
+    public DenseFeatureMatrix(double[][] X, int cols) {
+        this.X = X;
+        this.cols = cols;
+    }
+
+    /**
+     * Underlying rows (not copied)
+     */
+    public double[][] getArray() {
+        return X;
+    }
+
+    @Override
+    public int rows() {
+        return X.length;
+    }
+
+    @Override
+    public int cols() {
+        return cols;
+    }
+
+    @Override
+    public double get(int row, int col) {
+        return X[row][col];
+    }
+
+    @Override
+    public double dotRow(int row, double[] theta) {
+        double[] x = X[row];
+        double sum = theta[0];
+        for (int j = 0; j < x.length; j++) {
+            sum += theta[j + 1] * x[j];
+        }
+        return sum;
+    }
+
+    @Override
+    public void addRowTo(int row, double alpha, double[] out) {
+        double[] x = X[row];
+        out[0] += alpha;
+        for (int j = 0; j < x.length; j++) {
+            out[j + 1] += alpha * x[j];
+        }
+    }
+
+    @Override
+    public int rowEntries(int row, int[] cols, double[] values) {
+        double[] x = X[row];
+        int count = 0;
+        for (int j = 0; j < x.length; j++) {
+            if (x[j] != 0.0) {
+                cols[count] = j;
+                values[count] = x[j];
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public double[] getRow(int row) {
+        return X[row];
+    }
+
+    @Override
+    public FeatureMatrix selectRows(int[] indices) {
+        double[][] result = new double[indices.length][];
+        for (int i = 0; i < indices.length; i++) {
+            result[i] = X[indices[i]];
+        }
+        return new DenseFeatureMatrix(result, cols);
+    }
+
+    @Override
+    public long memoryBytes() {
+        // 8 bytes per value + array header and reference per row
+        return (long) X.length * ((long) cols * 8 + 24);
+    }
+
+    /**
+     * Collects parsed rows into a double[][]
+     */
+    public static class Builder implements FeatureMatrix.Builder {
+        private final List<double[]> rows = new ArrayList<>();
+        private final int cols;
+
+        public Builder(int cols) {
+            this.cols = cols;
+        }
+
+        @Override
+        public void addRow(double[] row) {
+            rows.add(row.clone());
+        }
+
+        @Override
+        public FeatureMatrix build() {
+            return new DenseFeatureMatrix(rows.toArray(new double[0][]), cols);
+        }
+    }
+}
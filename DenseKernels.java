@@ -0,0 +1,222 @@
+/**
+ * Cache-blocked dense linear algebra kernels over flat row-major arrays
+ *
+ * Element (i, j) of an r x c matrix is stored at a[i * c + j]. Every kernel
+ * works on tiles small enough to stay in L1/L2 and walks memory with unit
+ * stride in its inner loop, instead of reading down the columns of a
+ * jagged double[][] as the textbook i-j-k loops do.
+ */
+public class DenseKernels {
+    private static final int TILE = 64;        // Row / inner-dimension tile (64 x 64 doubles = 32 KB)
+    private static final int GEMM_COL_TILE = 512; // Long enough for the JIT to vectorize the inner loop
+    private static final int TRANSPOSE_TILE = 32;
+    private static final int ROW_PANEL = 256;  // Rows packed per SYRK panel
+
+    private DenseKernels() {
+    }
+
+    /**
+     * Copy a jagged matrix into a flat row-major array
+     */
+    public static double[] flatten(double[][] a) {
+        int rows = a.length;
+        int cols = rows == 0 ? 0 : a[0].length;
+        double[] flat = new double[rows * cols];
+        for (int i = 0; i < rows; i++) {
+            System.arraycopy(a[i], 0, flat, i * cols, cols);
+        }
+        return flat;
+    }
+
+    /**
+     * Blocked transpose: returns the cols x rows transpose of a (rows x cols)
+     */
+    public static double[] transpose(double[] a, int rows, int cols) {
+        double[] t = new double[rows * cols];
+        for (int ii = 0; ii < rows; ii += TRANSPOSE_TILE) {
+            int iEnd = Math.min(rows, ii + TRANSPOSE_TILE);
+            for (int jj = 0; jj < cols; jj += TRANSPOSE_TILE) {
+                int jEnd = Math.min(cols, jj + TRANSPOSE_TILE);
+                for (int i = ii; i < iEnd; i++) {
+                    int src = i * cols;
+                    for (int j = jj; j < jEnd; j++) {
+                        t[j * rows + i] = a[src + j];
+                    }
+                }
+            }
+        }
+        return t;
+    }
+
+    /**
+     * Tiled GEMM: C (m x n) = A (m x k) * B (k x n)
+     */
+    public static double[] gemm(double[] a, double[] b, int m, int k, int n) {
+        double[] c = new double[m * n];
+        for (int ii = 0; ii < m; ii += TILE) {
+            int iEnd = Math.min(m, ii + TILE);
+            for (int kk = 0; kk < k; kk += TILE) {
+                int kEnd = Math.min(k, kk + TILE);
+                for (int jj = 0; jj < n; jj += GEMM_COL_TILE) {
+                    int jEnd = Math.min(n, jj + GEMM_COL_TILE);
+                    for (int i = ii; i < iEnd; i++) {
+                        int cRow = i * n;
+                        int aRow = i * k;
+                        for (int p = kk; p < kEnd; p++) {
+                            double aip = a[aRow + p];
+                            int bRow = p * n;
+                            for (int j = jj; j < jEnd; j++) {
+                                c[cRow + j] += aip * b[bRow + j];
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return c;
+    }
+
+    /**
+     * Symmetric rank-k update with a bias column in front:
+     * returns X_bias^T * X_bias as a flat (n+1) x (n+1) matrix, where
+     * X_bias = [1 | X]. Only the upper triangle is computed, then mirrored.
+     *
+     * Rows are packed a panel at a time into a transposed buffer, so each
+     * entry of the result is a unit-stride dot product over the panel.
+     */
+    public static double[] syrkBias(double[][] X) {
+        int m = X.length;
+        int n = m == 0 ? 0 : X[0].length;
+        int d = n + 1;
+        double[] c = new double[d * d];
+        double[] panel = new double[d * ROW_PANEL];
+
+        for (int r0 = 0; r0 < m; r0 += ROW_PANEL) {
+            int rows = Math.min(ROW_PANEL, m - r0);
+            packTransposedBias(X, r0, rows, n, panel);
+
+            for (int ii = 0; ii < d; ii += TILE) {
+                int iEnd = Math.min(d, ii + TILE);
+                for (int jj = ii; jj < d; jj += TILE) {
+                    int jEnd = Math.min(d, jj + TILE);
+                    for (int i = ii; i < iEnd; i++) {
+                        int pi = i * ROW_PANEL;
+                        int cRow = i * d;
+                        for (int j = Math.max(i, jj); j < jEnd; j++) {
+                            int pj = j * ROW_PANEL;
+                            double sum = 0;
+                            for (int r = 0; r < rows; r++) {
+                                sum += panel[pi + r] * panel[pj + r];
+                            }
+                            c[cRow + j] += sum;
+                        }
+                    }
+                }
+            }
+        }
+
+        for (int i = 0; i < d; i++) {
+            for (int j = i + 1; j < d; j++) {
+                c[j * d + i] = c[i * d + j];
+            }
+        }
+        return c;
+    }
+
+    // panel[j * ROW_PANEL + r] = X_bias[r0 + r][j], packed in column tiles
+    private static void packTransposedBias(double[][] X, int r0, int rows, int n, double[] panel) {
+        for (int r = 0; r < rows; r++) {
+            panel[r] = 1.0;
+        }
+        for (int jj = 0; jj < n; jj += TRANSPOSE_TILE) {
+            int jEnd = Math.min(n, jj + TRANSPOSE_TILE);
+            for (int r = 0; r < rows; r++) {
+                double[] row = X[r0 + r];
+                for (int j = jj; j < jEnd; j++) {
+                    panel[(j + 1) * ROW_PANEL + r] = row[j];
+                }
+            }
+        }
+    }
+
+    /**
+     * X_bias^T * y (length n+1) without forming X_bias
+     */
+    public static double[] gemvTransposeBias(double[][] X, double[] y) {
+        int n = X.length == 0 ? 0 : X[0].length;
+        double[] out = new double[n + 1];
+        for (int i = 0; i < X.length; i++) {
+            double yi = y[i];
+            double[] row = X[i];
+            out[0] += yi;
+            for (int j = 0; j < n; j++) {
+                out[j + 1] += row[j] * yi;
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Solve A x = b for a symmetric positive definite A (flat n x n) by
+     * Cholesky factorization A = L L^T. Rows of L are read with unit stride.
+     * @return x, or null if A is not (numerically) positive definite
+     */
+    public static double[] choleskySolve(double[] a, double[] b, int n) {
+        double[] l = cholesky(a, n);
+        return l != null ? choleskySolveFactored(l, b, n) : null;
+    }
+
+    /**
+     * Lower triangular L (flat n x n) with L L^T = A
+     * @return L, or null if A is not (numerically) positive definite
+     */
+    public static double[] cholesky(double[] a, int n) {
+        double[] l = new double[n * n];
+        for (int i = 0; i < n; i++) {
+            int li = i * n;
+            for (int j = 0; j <= i; j++) {
+                int lj = j * n;
+                double sum = a[li + j];
+                for (int k = 0; k < j; k++) {
+                    sum -= l[li + k] * l[lj + k];
+                }
+                if (i == j) {
+                    if (sum <= 0 || Double.isNaN(sum)) {
+                        return null;
+                    }
+                    l[li + i] = Math.sqrt(sum);
+                } else {
+                    l[li + j] = sum / l[lj + j];
+                }
+            }
+        }
+        return l;
+    }
+
+    /**
+     * Solve L L^T x = b for a factor from cholesky(), O(n²)
+     */
+    public static double[] choleskySolveFactored(double[] l, double[] b, int n) {
+        // Forward substitution: L z = b
+        double[] x = new double[n];
+        for (int i = 0; i < n; i++) {
+            int li = i * n;
+            double sum = b[i];
+            for (int k = 0; k < i; k++) {
+                sum -= l[li + k] * x[k];
+            }
+            x[i] = sum / l[li + i];
+        }
+
+        // Back substitution: L^T x = z, column-oriented so L is still read by rows
+        for (int i = n - 1; i >= 0; i--) {
+            int li = i * n;
+            x[i] /= l[li + i];
+            double xi = x[i];
+            for (int k = 0; k < i; k++) {
+                x[k] -= l[li + k] * xi;
+            }
+        }
+        return x;
+    }
+}
@@ -0,0 +1,474 @@
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * One compressed column of doubles with random access by row
+ *
+ * The encoding is chosen per column, whichever is smallest:
+ *   DICTIONARY  distinct values in a sorted table, codes bit-packed
+ *               (flags use 1 bit, a constant column 0 bits)
+ *   XOR         blocks of 16 values: the first raw, the others XOR-ed with
+ *               the previous value and stored without their zero bytes
+ *               (repeated or slowly changing values take 1-3 bytes)
+ *   RAW         plain double[]
+ * All encodings are lossless. Also has the integer encodings used for the key
+ * columns of the encoded dataset file (run-length and bit-packing).
+ */
+public abstract class EncodedColumn {
+    private static final int MAX_DICTIONARY = 1 << 16;
+    private static final int XOR_BLOCK = 16;
+
+    private static final byte RAW = 0;
+    private static final byte DICTIONARY = 1;
+    private static final byte XOR = 2;
+
+    public abstract double get(int row);
+
+    /**
+     * Same value as get, for row scans that read neighbouring rows in turn
+     * (the row kernels of EncodedFeatureMatrix). Xor overrides it to decode
+     * a whole block once and serve the next reads from it.
+     */
+    public double scan(int row) {
+        return get(row);
+    }
+
+    public abstract int size();
+
+    public abstract long memoryBytes();
+
+    /**
+     * Encoding name for reports
+     */
+    public abstract String encoding();
+
+    abstract void write(DataOutputStream out) throws IOException;
+
+    /**
+     * Encode the first {@code count} values with the smallest encoding
+     */
+    public static EncodedColumn encode(double[] values, int count) {
+        EncodedColumn best = new Raw(Arrays.copyOf(values, count));
+        EncodedColumn dictionary = Dictionary.tryEncode(values, count);
+        if (dictionary != null && dictionary.memoryBytes() < best.memoryBytes()) {
+            best = dictionary;
+        }
+        EncodedColumn xor = Xor.encodeXor(values, count);
+        if (xor.memoryBytes() < best.memoryBytes()) {
+            best = xor;
+        }
+        return best;
+    }
+
+    public static EncodedColumn read(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        int count = in.readInt();
+        switch (type) {
+            case RAW: {
+                double[] values = new double[count];
+                for (int i = 0; i < count; i++) {
+                    values[i] = in.readDouble();
+                }
+                return new Raw(values);
+            }
+            case DICTIONARY: {
+                double[] dictionary = new double[in.readInt()];
+                for (int i = 0; i < dictionary.length; i++) {
+                    dictionary[i] = in.readDouble();
+                }
+                int bits = in.readByte();
+                return new Dictionary(dictionary, bits, readLongs(in), count);
+            }
+            case XOR: {
+                int[] offsets = new int[in.readInt()];
+                for (int i = 0; i < offsets.length; i++) {
+                    offsets[i] = in.readInt();
+                }
+                byte[] data = new byte[in.readInt()];
+                in.readFully(data);
+                return new Xor(data, offsets, count);
+            }
+            default:
+                throw new IOException("Unknown column encoding: " + type);
+        }
+    }
+
+    // ============ ENCODINGS ============
+
+    static final class Raw extends EncodedColumn {
+        private final double[] values;
+
+        Raw(double[] values) {
+            this.values = values;
+        }
+
+        @Override
+        public double get(int row) {
+            return values[row];
+        }
+
+        @Override
+        public int size() {
+            return values.length;
+        }
+
+        @Override
+        public long memoryBytes() {
+            return (long) values.length * 8 + 16;
+        }
+
+        @Override
+        public String encoding() {
+            return "RAW";
+        }
+
+        @Override
+        void write(DataOutputStream out) throws IOException {
+            out.writeByte(RAW);
+            out.writeInt(values.length);
+            for (double value : values) {
+                out.writeDouble(value);
+            }
+        }
+    }
+
+    static final class Dictionary extends EncodedColumn {
+        private final double[] dictionary;
+        private final int bits;
+        private final long[] codes;
+        private final int count;
+
+        Dictionary(double[] dictionary, int bits, long[] codes, int count) {
+            this.dictionary = dictionary;
+            this.bits = bits;
+            this.codes = codes;
+            this.count = count;
+        }
+
+        /**
+         * @return the encoded column, or null if there are too many distinct values
+         */
+        static Dictionary tryEncode(double[] values, int count) {
+            Map<Long, Integer> distinct = new HashMap<>();
+            for (int i = 0; i < count; i++) {
+                distinct.putIfAbsent(Double.doubleToRawLongBits(values[i]), distinct.size());
+                if (distinct.size() > MAX_DICTIONARY) {
+                    return null;
+                }
+            }
+            double[] dictionary = distinct.keySet().stream()
+                .mapToDouble(Double::longBitsToDouble).sorted().toArray();
+            Map<Long, Integer> code = new HashMap<>();
+            for (int c = 0; c < dictionary.length; c++) {
+                code.put(Double.doubleToRawLongBits(dictionary[c]), c);
+            }
+            int bits = bitsFor(dictionary.length - 1);
+            long[] packed = new long[packedLength(count, bits)];
+            for (int i = 0; i < count; i++) {
+                pack(packed, bits, i, code.get(Double.doubleToRawLongBits(values[i])));
+            }
+            return new Dictionary(dictionary, bits, packed, count);
+        }
+
+        @Override
+        public double get(int row) {
+            return dictionary[unpack(codes, bits, row)];
+        }
+
+        @Override
+        public int size() {
+            return count;
+        }
+
+        @Override
+        public long memoryBytes() {
+            return (long) dictionary.length * 8 + (long) codes.length * 8 + 32;
+        }
+
+        @Override
+        public String encoding() {
+            return "DICT" + bits;
+        }
+
+        @Override
+        void write(DataOutputStream out) throws IOException {
+            out.writeByte(DICTIONARY);
+            out.writeInt(count);
+            out.writeInt(dictionary.length);
+            for (double value : dictionary) {
+                out.writeDouble(value);
+            }
+            out.writeByte(bits);
+            writeLongs(out, codes);
+        }
+    }
+
+    static final class Xor extends EncodedColumn {
+        private final byte[] data;
+        private final int[] offsets; // Start of each block in data
+        private final int count;
+        // Last block decoded by scan, per thread (scans run in parallel folds)
+        private final ThreadLocal<Block> lastBlock = ThreadLocal.withInitial(Block::new);
+
+        private static final class Block {
+            int index = -1;
+            final long[] bits = new long[XOR_BLOCK];
+        }
+
+        Xor(byte[] data, int[] offsets, int count) {
+            this.data = data;
+            this.offsets = offsets;
+            this.count = count;
+        }
+
+        static Xor encodeXor(double[] values, int count) {
+            byte[] data = new byte[Math.max(16, count * 2)];
+            int[] offsets = new int[(count + XOR_BLOCK - 1) / XOR_BLOCK];
+            int pos = 0;
+            long previous = 0;
+            for (int i = 0; i < count; i++) {
+                if (data.length - pos < 9) {
+                    data = Arrays.copyOf(data, data.length * 2);
+                }
+                long bits = Double.doubleToRawLongBits(values[i]);
+                if (i % XOR_BLOCK == 0) {
+                    offsets[i / XOR_BLOCK] = pos;
+                    for (int b = 0; b < 8; b++) {
+                        data[pos++] = (byte) (bits >>> (8 * b));
+                    }
+                } else {
+                    // Header: leading zero bytes (high nibble), trailing zero bytes (low nibble)
+                    long x = bits ^ previous;
+                    int leading = x == 0 ? 8 : Long.numberOfLeadingZeros(x) / 8;
+                    int trailing = x == 0 ? 0 : Long.numberOfTrailingZeros(x) / 8;
+                    data[pos++] = (byte) (leading << 4 | trailing);
+                    for (int b = trailing; b < 8 - leading; b++) {
+                        data[pos++] = (byte) (x >>> (8 * b));
+                    }
+                }
+                previous = bits;
+            }
+            return new Xor(Arrays.copyOf(data, pos), offsets, count);
+        }
+
+        @Override
+        public double get(int row) {
+            int pos = offsets[row / XOR_BLOCK];
+            long bits = 0;
+            for (int b = 0; b < 8; b++) {
+                bits |= (data[pos++] & 0xFFL) << (8 * b);
+            }
+            for (int k = row % XOR_BLOCK; k > 0; k--) {
+                int header = data[pos++];
+                int leading = (header >>> 4) & 15;
+                int trailing = header & 15;
+                long x = 0;
+                for (int b = trailing; b < 8 - leading; b++) {
+                    x |= (data[pos++] & 0xFFL) << (8 * b);
+                }
+                bits ^= x;
+            }
+            return Double.longBitsToDouble(bits);
+        }
+
+        @Override
+        public double scan(int row) {
+            Block block = lastBlock.get();
+            int index = row / XOR_BLOCK;
+            if (block.index != index) {
+                decodeBlock(index, block.bits);
+                block.index = index;
+            }
+            return Double.longBitsToDouble(block.bits[row % XOR_BLOCK]);
+        }
+
+        /**
+         * Decode all values of one block in a single pass
+         */
+        private void decodeBlock(int index, long[] out) {
+            int pos = offsets[index];
+            int length = Math.min(XOR_BLOCK, count - index * XOR_BLOCK);
+            long bits = 0;
+            for (int b = 0; b < 8; b++) {
+                bits |= (data[pos++] & 0xFFL) << (8 * b);
+            }
+            out[0] = bits;
+            for (int k = 1; k < length; k++) {
+                int header = data[pos++];
+                int leading = (header >>> 4) & 15;
+                int trailing = header & 15;
+                long x = 0;
+                for (int b = trailing; b < 8 - leading; b++) {
+                    x |= (data[pos++] & 0xFFL) << (8 * b);
+                }
+                bits ^= x;
+                out[k] = bits;
+            }
+        }
+
+        @Override
+        public int size() {
+            return count;
+        }
+
+        @Override
+        public long memoryBytes() {
+            return data.length + (long) offsets.length * 4 + 32;
+        }
+
+        @Override
+        public String encoding() {
+            return "XOR";
+        }
+
+        @Override
+        void write(DataOutputStream out) throws IOException {
+            out.writeByte(XOR);
+            out.writeInt(count);
+            out.writeInt(offsets.length);
+            for (int offset : offsets) {
+                out.writeInt(offset);
+            }
+            out.writeInt(data.length);
+            out.write(data);
+        }
+    }
+
+    // ============ INTEGER COLUMNS ============
+
+    /**
+     * Write an int column run-length encoded (Account_Key repeats for every
+     * month of an account) or bit-packed from its minimum (Year, Month),
+     * whichever is smaller
+     */
+    public static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        int runs = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (i == 0 || values[i] != values[i - 1]) runs++;
+        }
+        int[] runValues = new int[runs];
+        int[] runLengths = new int[runs];
+        int r = -1;
+        for (int i = 0; i < values.length; i++) {
+            if (i == 0 || values[i] != values[i - 1]) {
+                runValues[++r] = values[i];
+            }
+            runLengths[r]++;
+        }
+        if (packedBytes(runValues) + packedBytes(runLengths) < packedBytes(values)) {
+            out.writeBoolean(true);
+            writePacked(out, runValues);
+            writePacked(out, runLengths);
+        } else {
+            out.writeBoolean(false);
+            writePacked(out, values);
+        }
+    }
+
+    public static int[] readInts(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return readPacked(in);
+        }
+        int[] runValues = readPacked(in);
+        int[] runLengths = readPacked(in);
+        int total = 0;
+        for (int length : runLengths) {
+            total += length;
+        }
+        int[] values = new int[total];
+        int pos = 0;
+        for (int r = 0; r < runValues.length; r++) {
+            Arrays.fill(values, pos, pos + runLengths[r], runValues[r]);
+            pos += runLengths[r];
+        }
+        return values;
+    }
+
+    private static long packedBytes(int[] values) {
+        if (values.length == 0) return 0;
+        long min = Arrays.stream(values).min().getAsInt();
+        long max = Arrays.stream(values).max().getAsInt();
+        return (long) packedLength(values.length, bitsFor(max - min)) * 8;
+    }
+
+    private static void writePacked(DataOutputStream out, int[] values) throws IOException {
+        int min = values.length == 0 ? 0 : Arrays.stream(values).min().getAsInt();
+        int max = values.length == 0 ? 0 : Arrays.stream(values).max().getAsInt();
+        int bits = bitsFor((long) max - min);
+        long[] packed = new long[packedLength(values.length, bits)];
+        for (int i = 0; i < values.length; i++) {
+            pack(packed, bits, i, (long) values[i] - min);
+        }
+        out.writeInt(values.length);
+        out.writeInt(min);
+        out.writeByte(bits);
+        writeLongs(out, packed);
+    }
+
+    private static int[] readPacked(DataInputStream in) throws IOException {
+        int[] values = new int[in.readInt()];
+        int min = in.readInt();
+        int bits = in.readByte();
+        long[] packed = readLongs(in);
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (int) (min + unpackLong(packed, bits, i));
+        }
+        return values;
+    }
+
+    // ============ BIT PACKING ============
+
+    private static int bitsFor(long maxValue) {
+        return maxValue <= 0 ? 0 : 64 - Long.numberOfLeadingZeros(maxValue);
+    }
+
+    private static int packedLength(int count, int bits) {
+        return (int) (((long) count * bits + 63) / 64);
+    }
+
+    private static void pack(long[] words, int bits, int i, long value) {
+        if (bits == 0) return;
+        long bitPos = (long) i * bits;
+        int word = (int) (bitPos >>> 6);
+        int shift = (int) (bitPos & 63);
+        words[word] |= value << shift;
+        if (shift + bits > 64) {
+            words[word + 1] |= value >>> (64 - shift);
+        }
+    }
+
+    private static long unpackLong(long[] words, int bits, int i) {
+        if (bits == 0) return 0;
+        long bitPos = (long) i * bits;
+        int word = (int) (bitPos >>> 6);
+        int shift = (int) (bitPos & 63);
+        long value = words[word] >>> shift;
+        if (shift + bits > 64) {
+            value |= words[word + 1] << (64 - shift);
+        }
+        return bits == 64 ? value : value & ((1L << bits) - 1);
+    }
+
+    private static int unpack(long[] words, int bits, int i) {
+        return (int) unpackLong(words, bits, i);
+    }
+
+    private static void writeLongs(DataOutputStream out, long[] values) throws IOException {
+        out.writeInt(values.length);
+        for (long value : values) {
+            out.writeLong(value);
+        }
+    }
+
+    private static long[] readLongs(DataInputStream in) throws IOException {
+        long[] values = new long[in.readInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.readLong();
+        }
+        return values;
+    }
+}
@@ -0,0 +1,128 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Compressed on-disk copy of a parsed dataset (cache of Storage.ENCODED)
+ *
+ * Account_Key is run-length encoded (one run per account in the time series
+ * layout), Year and Month are bit-packed, and the target and feature columns
+ * use the EncodedColumn encodings. Loading it skips CSV parsing entirely.
+ *
+ * Layout: int magic, long fingerprint of the CSV, UTF target, int rows,
+ * int cols, cols x UTF feature name, keys, years, months, target column
+ * (NaN = future row), cols x feature column
+ */
+public class EncodedDatasetFile {
+    private static final int MAGIC = 0x454E4331; // "ENC1"
+
+    private EncodedDatasetFile() {
+    }
+
+    /**
+     * Write the dataset; a failure only loses the cache and is reported on stderr
+     */
+    public static void write(File file, long fingerprint, DataLoader.Dataset dataset) {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16))) {
+            FeatureMatrix matrix = dataset.matrix;
+            out.writeInt(MAGIC);
+            out.writeLong(fingerprint);
+            out.writeUTF(dataset.targetCol);
+            out.writeInt(matrix.rows());
+            out.writeInt(matrix.cols());
+            for (int j = 0; j < matrix.cols(); j++) {
+                out.writeUTF(dataset.featureNames != null ? dataset.featureNames[j] : "x" + j);
+            }
+            EncodedColumn.writeInts(out, dataset.accountKeys);
+            EncodedColumn.writeInts(out, dataset.years);
+            EncodedColumn.writeInts(out, dataset.months);
+
+            double[] y = new double[dataset.y.length];
+            for (int i = 0; i < y.length; i++) {
+                y[i] = dataset.y[i] != null ? dataset.y[i] : Double.NaN;
+            }
+            EncodedColumn.encode(y, y.length).write(out);
+
+            if (matrix instanceof EncodedFeatureMatrix && ((EncodedFeatureMatrix) matrix).getColumns() != null) {
+                for (EncodedColumn column : ((EncodedFeatureMatrix) matrix).getColumns()) {
+                    column.write(out);
+                }
+            } else {
+                double[] values = new double[matrix.rows()];
+                for (int j = 0; j < matrix.cols(); j++) {
+                    for (int i = 0; i < values.length; i++) {
+                        values[i] = matrix.get(i, j);
+                    }
+                    EncodedColumn.encode(values, values.length).write(out);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Warning: could not write " + file + ": " + e.getMessage());
+            tmp.delete();
+            return;
+        }
+        try {
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            System.err.println("Warning: could not write " + file + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return the dataset, or null if the file is missing or was built from another CSV version
+     */
+    public static DataLoader.Dataset read(File file, long fingerprint) {
+        if (!file.exists()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readLong() != fingerprint) {
+                return null;
+            }
+            String targetCol = in.readUTF();
+            int rows = in.readInt();
+            String[] featureNames = new String[in.readInt()];
+            for (int j = 0; j < featureNames.length; j++) {
+                featureNames[j] = in.readUTF();
+            }
+            int[] accountKeys = EncodedColumn.readInts(in);
+            int[] years = EncodedColumn.readInts(in);
+            int[] months = EncodedColumn.readInts(in);
+
+            EncodedColumn target = EncodedColumn.read(in);
+            Double[] y = new Double[rows];
+            StreamingStats targetStats = new StreamingStats();
+            for (int i = 0; i < rows; i++) {
+                double value = target.get(i);
+                if (!Double.isNaN(value)) {
+                    y[i] = value;
+                    targetStats.add(value);
+                }
+            }
+
+            EncodedColumn[] columns = new EncodedColumn[featureNames.length];
+            for (int j = 0; j < columns.length; j++) {
+                columns[j] = EncodedColumn.read(in);
+            }
+
+            DataLoader.Dataset dataset = new DataLoader.Dataset(accountKeys, years, months,
+                new EncodedFeatureMatrix(columns, rows), y, targetCol);
+            dataset.featureNames = featureNames;
+            dataset.targetStats = targetStats;
+            return dataset;
+        } catch (IOException e) {
+            System.err.println("Warning: ignoring unreadable " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Column-compressed feature storage
+ *
+ * Each feature column is stored with its own lossless encoding (see
+ * EncodedColumn): flags and codes such as Gender_Code or Is_Credit_Card take
+ * 1-3 bits per row, low-cardinality features a few bits plus a dictionary,
+ * and repetitive doubles are XOR-encoded. Values are decoded on read, so the
+ * training and prediction kernels run on it unchanged; the row kernels use
+ * EncodedColumn.scan so XOR blocks are decoded once per scan, not per cell.
+ *
+ * selectRows returns a view (row map) over the same encoded columns.
+ */
+public class EncodedFeatureMatrix implements FeatureMatrix {
+    private final EncodedColumn[] columns;
+    private final int[] rowMap; // View rows -> encoded rows (null = identity)
+    private final int rows;
+
+    public EncodedFeatureMatrix(EncodedColumn[] columns, int rows) {
+        this(columns, null, rows);
+    }
+
+    private EncodedFeatureMatrix(EncodedColumn[] columns, int[] rowMap, int rows) {
+        this.columns = columns;
+        this.rowMap = rowMap;
+        this.rows = rows;
+    }
+
+    @Override
+    public int rows() {
+        return rows;
+    }
+
+    @Override
+    public int cols() {
+        return columns.length;
+    }
+
+    @Override
+    public double get(int row, int col) {
+        return columns[col].get(rowMap == null ? row : rowMap[row]);
+    }
+
+    @Override
+    public double dotRow(int row, double[] theta) {
+        int r = rowMap == null ? row : rowMap[row];
+        double sum = theta[0];
+        for (int j = 0; j < columns.length; j++) {
+            sum += theta[j + 1] * columns[j].scan(r);
+        }
+        return sum;
+    }
+
+    @Override
+    public void addRowTo(int row, double alpha, double[] out) {
+        int r = rowMap == null ? row : rowMap[row];
+        out[0] += alpha;
+        for (int j = 0; j < columns.length; j++) {
+            out[j + 1] += alpha * columns[j].scan(r);
+        }
+    }
+
+    @Override
+    public int rowEntries(int row, int[] cols, double[] values) {
+        int r = rowMap == null ? row : rowMap[row];
+        int count = 0;
+        for (int j = 0; j < columns.length; j++) {
+            double value = columns[j].scan(r);
+            if (value != 0.0) {
+                cols[count] = j;
+                values[count] = value;
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public double[] getRow(int row) {
+        int r = rowMap == null ? row : rowMap[row];
+        double[] result = new double[columns.length];
+        for (int j = 0; j < columns.length; j++) {
+            result[j] = columns[j].scan(r);
+        }
+        return result;
+    }
+
+    @Override
+    public FeatureMatrix selectRows(int[] indices) {
+        int[] map = new int[indices.length];
+        for (int i = 0; i < indices.length; i++) {
+            map[i] = rowMap == null ? indices[i] : rowMap[indices[i]];
+        }
+        return new EncodedFeatureMatrix(columns, map, indices.length);
+    }
+
+    @Override
+    public long memoryBytes() {
+        long bytes = rowMap == null ? 0 : (long) rowMap.length * 4;
+        for (EncodedColumn column : columns) {
+            bytes += column.memoryBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Encoded columns, or null for a view created by selectRows
+     */
+    EncodedColumn[] getColumns() {
+        return rowMap == null ? columns : null;
+    }
+
+    /**
+     * Number of columns per encoding, e.g. {DICT1=3, RAW=9, XOR=1}
+     */
+    public String encodingSummary() {
+        Map<String, Integer> counts = new TreeMap<>();
+        for (EncodedColumn column : columns) {
+            counts.merge(column.encoding(), 1, Integer::sum);
+        }
+        return counts.toString();
+    }
+
+    /**
+     * Buffers parsed values column by column and encodes each column on build
+     */
+    public static class Builder implements FeatureMatrix.Builder {
+        private final int cols;
+        private double[][] values;
+        private int rows = 0;
+
+        public Builder(int cols) {
+            this.cols = cols;
+            this.values = new double[cols][1024];
+        }
+
+        @Override
+        public void addRow(double[] row) {
+            if (cols > 0 && rows == values[0].length) {
+                for (int j = 0; j < cols; j++) {
+                    values[j] = Arrays.copyOf(values[j], rows * 2);
+                }
+            }
+            for (int j = 0; j < cols; j++) {
+                values[j][rows] = row[j];
+            }
+            rows++;
+        }
+
+        @Override
+        public FeatureMatrix build() {
+            EncodedColumn[] columns = new EncodedColumn[cols];
+            for (int j = 0; j < cols; j++) {
+                columns[j] = EncodedColumn.encode(values[j], rows);
+                values[j] = null; // Release each buffer as soon as its column is encoded
+            }
+            return new EncodedFeatureMatrix(columns, rows);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/**
+ * A base feature matrix plus FeatureExpansion terms, computed on read
+ *
+ * Columns [0, base.cols()) are the base features, the following ones the
+ * expansion terms. Only the base block is stored: Gram accumulation (through
+ * rowEntries), dotRow and addRowTo evaluate the terms row by row.
+ */
+public class ExpandedFeatureMatrix implements FeatureMatrix {
+    private final FeatureMatrix base;
+    private final FeatureExpansion expansion;
+    private final int baseCols;
+
+    public ExpandedFeatureMatrix(FeatureMatrix base, FeatureExpansion expansion) {
+        this.base = base;
+        this.expansion = expansion;
+        this.baseCols = base.cols();
+    }
+
+    @Override
+    public int rows() {
+        return base.rows();
+    }
+
+    @Override
+    public int cols() {
+        return baseCols + expansion.size();
+    }
+
+    @Override
+    public double get(int row, int col) {
+        return col < baseCols ? base.get(row, col) : expansion.value(col - baseCols, base, row);
+    }
+
+    @Override
+    public double dotRow(int row, double[] theta) {
+        // Base implementations only read θ[0..baseCols]
+        double sum = base.dotRow(row, theta);
+        for (int t = 0; t < expansion.size(); t++) {
+            sum += theta[baseCols + 1 + t] * expansion.value(t, base, row);
+        }
+        return sum;
+    }
+
+    @Override
+    public void addRowTo(int row, double alpha, double[] out) {
+        base.addRowTo(row, alpha, out);
+        for (int t = 0; t < expansion.size(); t++) {
+            out[baseCols + 1 + t] += alpha * expansion.value(t, base, row);
+        }
+    }
+
+    @Override
+    public int rowEntries(int row, int[] cols, double[] values) {
+        int count = base.rowEntries(row, cols, values);
+        for (int t = 0; t < expansion.size(); t++) {
+            double value = expansion.value(t, base, row);
+            if (value != 0.0) {
+                cols[count] = baseCols + t;
+                values[count] = value;
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public FeatureMatrix selectRows(int[] indices) {
+        return new ExpandedFeatureMatrix(base.selectRows(indices), expansion);
+    }
+
+    @Override
+    public long memoryBytes() {
+        return base.memoryBytes();
+    }
+
+    public FeatureMatrix getBase() {
+        return base;
+    }
+}
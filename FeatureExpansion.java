@@ -0,0 +1,123 @@
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Extra model terms computed from the base features, appended after them
+ *
+ * Spec (comma separated), e.g. "Age*Is_Credit_Card,Tenure_Days^2,log(Amount_Food)":
+ *   A*B     interaction of two features
+ *   A^2     square of a feature
+ *   log(A)  log(1 + A), for non-negative amounts and counts
+ *
+ * Terms are evaluated on the fly from a row (ExpandedFeatureMatrix for
+ * training and batch prediction, value() for single rows), so the expanded
+ * feature block is never stored. Stored with the model.
+ */
+public class FeatureExpansion implements Serializable {
+    private static final long serialVersionUID = 1L; // Saved in the model metadata
+    private static final int PRODUCT = 0;
+    private static final int LOG = 1;
+
+    private final String[] names;
+    private final int[] kinds;
+    private final int[] first;
+    private final int[] second;
+
+    private FeatureExpansion(String[] names, int[] kinds, int[] first, int[] second) {
+        this.names = names;
+        this.kinds = kinds;
+        this.first = first;
+        this.second = second;
+    }
+
+    /**
+     * Resolve a spec against the base feature names
+     */
+    public static FeatureExpansion fromSpec(String spec, String[] featureNames) {
+        List<String> names = new ArrayList<>();
+        List<int[]> terms = new ArrayList<>();
+        for (String part : spec.split(",")) {
+            String term = part.trim().replace(" ", "");
+            if (term.isEmpty()) continue;
+            if (term.startsWith("log(") && term.endsWith(")")) {
+                terms.add(new int[] {LOG, column(term.substring(4, term.length() - 1), featureNames), -1});
+            } else if (term.endsWith("^2")) {
+                int col = column(term.substring(0, term.length() - 2), featureNames);
+                terms.add(new int[] {PRODUCT, col, col});
+            } else if (term.contains("*")) {
+                String[] factors = term.split("\\*");
+                if (factors.length != 2) {
+                    throw new IllegalArgumentException("Only pairwise interactions are supported: " + term);
+                }
+                terms.add(new int[] {PRODUCT, column(factors[0], featureNames), column(factors[1], featureNames)});
+            } else {
+                throw new IllegalArgumentException("Unknown expansion term: " + term
+                    + " (expected A*B, A^2 or log(A))");
+            }
+            names.add(term);
+        }
+        return new FeatureExpansion(names.toArray(new String[0]),
+                                    terms.stream().mapToInt(t -> t[0]).toArray(),
+                                    terms.stream().mapToInt(t -> t[1]).toArray(),
+                                    terms.stream().mapToInt(t -> t[2]).toArray());
+    }
+
+    private static int column(String name, String[] featureNames) {
+        for (int j = 0; featureNames != null && j < featureNames.length; j++) {
+            if (featureNames[j].equals(name)) return j;
+        }
+        throw new IllegalArgumentException("Unknown expansion column: " + name);
+    }
+
+    /**
+     * Number of extra terms
+     */
+    public int size() {
+        return kinds.length;
+    }
+
+    /**
+     * Value of term t for a base feature row
+     */
+    public double value(int t, double[] row) {
+        return kinds[t] == LOG ? Math.log1p(row[first[t]]) : row[first[t]] * row[second[t]];
+    }
+
+    /**
+     * Value of term t for row i of a base feature matrix
+     */
+    public double value(int t, FeatureMatrix X, int i) {
+        double a = X.get(i, first[t]);
+        if (kinds[t] == LOG) {
+            return Math.log1p(a);
+        }
+        return first[t] == second[t] ? a * a : a * X.get(i, second[t]);
+    }
+
+    /**
+     * θ_extra · terms(row), θ_extra starting at theta[offset]
+     */
+    public double dot(double[] row, double[] theta, int offset) {
+        double sum = 0;
+        for (int t = 0; t < kinds.length; t++) {
+            sum += theta[offset + t] * value(t, row);
+        }
+        return sum;
+    }
+
+    /**
+     * Base feature names followed by the term names
+     */
+    public String[] expandNames(String[] featureNames) {
+        String[] result = new String[featureNames.length + names.length];
+        System.arraycopy(featureNames, 0, result, 0, featureNames.length);
+        System.arraycopy(names, 0, result, featureNames.length, names.length);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return String.join(",", names);
+    }
+}
@@ -0,0 +1,75 @@
+/**
+ * Read access to a feature block: m rows x n columns, without the bias column
+ * Training, prediction and evaluation kernels work through this interface so the
+ * same code runs on dense or sparse (CSR) storage.
+ */
+public interface FeatureMatrix {
+
+    int rows();
+
+    int cols();
+
+    double get(int row, int col);
+
+    /**
+     * θ[0] + Σ θ[j+1] * x[row][j] (bias-aware dot product)
+     */
+    double dotRow(int row, double[] theta);
+
+    /**
+     * out[0] += alpha, out[j+1] += alpha * x[row][j]
+     */
+    void addRowTo(int row, double alpha, double[] out);
+
+    /**
+     * Non-zero entries of a row in increasing column order
+     * @param cols Output column indices (length >= cols())
+     * @param values Output values (length >= cols())
+     * @return Number of entries written
+     */
+    int rowEntries(int row, int[] cols, double[] values);
+
+    /**
+     * New matrix with the given rows, in the same storage format
+     */
+    FeatureMatrix selectRows(int[] indices);
+
+    /**
+     * Approximate memory used by the feature data
+     */
+    long memoryBytes();
+
+    /**
+     * Dense values of one row. Dense storage returns its own row array,
+     * so callers must copy it before modifying it.
+     */
+    default double[] getRow(int row) {
+        double[] result = new double[cols()];
+        for (int j = 0; j < result.length; j++) {
+            result[j] = get(row, j);
+        }
+        return result;
+    }
+
+    /**
+     * Number of stored non-zero values
+     */
+    default long nonZeros() {
+        int[] cols = new int[cols()];
+        double[] values = new double[cols()];
+        long count = 0;
+        for (int i = 0; i < rows(); i++) {
+            count += rowEntries(i, cols, values);
+        }
+        return count;
+    }
+
+    /**
+     * Row-by-row construction used by DataLoader
+     */
+    interface Builder {
+        void addRow(double[] row);
+
+        FeatureMatrix build();
+    }
+}
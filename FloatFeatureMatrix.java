@@ -0,0 +1,108 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Dense feature storage in single precision (float[][])
+ * Features are percentages, counts and min-max normalized values, so 24-bit
+ * mantissas are enough and the feature block takes half the memory of
+ * DenseFeatureMatrix. Values are widened to double on read: dot products,
+ * Gram accumulation and predictions are still computed in double.
+ */
+public class FloatFeatureMatrix implements FeatureMatrix {
+    private final float[][] X;
+    private final int cols;
+
+    public FloatFeatureMatrix(float[][] X, int cols) {
+        this.X = X;
+        this.cols = cols;
+    }
+
+    @Override
+    public int rows() {
+        return X.length;
+    }
+
+    @Override
+    public int cols() {
+        return cols;
+    }
+
+    @Override
+    public double get(int row, int col) {
+        return X[row][col];
+    }
+
+    @Override
+    public double dotRow(int row, double[] theta) {
+        float[] x = X[row];
+        double sum = theta[0];
+        for (int j = 0; j < x.length; j++) {
+            sum += theta[j + 1] * x[j];
+        }
+        return sum;
+    }
+
+    @Override
+    public void addRowTo(int row, double alpha, double[] out) {
+        float[] x = X[row];
+        out[0] += alpha;
+        for (int j = 0; j < x.length; j++) {
+            out[j + 1] += alpha * x[j];
+        }
+    }
+
+    @Override
+    public int rowEntries(int row, int[] cols, double[] values) {
+        float[] x = X[row];
+        int count = 0;
+        for (int j = 0; j < x.length; j++) {
+            if (x[j] != 0.0f) {
+                cols[count] = j;
+                values[count] = x[j];
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public FeatureMatrix selectRows(int[] indices) {
+        float[][] result = new float[indices.length][];
+        for (int i = 0; i < indices.length; i++) {
+            result[i] = X[indices[i]];
+        }
+        return new FloatFeatureMatrix(result, cols);
+    }
+
+    @Override
+    public long memoryBytes() {
+        // 4 bytes per value + array header and reference per row
+        return (long) X.length * ((long) cols * 4 + 24);
+    }
+
+    /**
+     * Collects parsed rows, rounding each value to float
+     */
+    public static class Builder implements FeatureMatrix.Builder {
+        private final List<float[]> rows = new ArrayList<>();
+        private final int cols;
+
+        public Builder(int cols) {
+            this.cols = cols;
+        }
+
+        @Override
+        public void addRow(double[] row) {
+            float[] values = new float[cols];
+            for (int j = 0; j < cols; j++) {
+                values[j] = (float) row[j];
+            }
+            rows.add(values);
+        }
+
+        @Override
+        public FeatureMatrix build() {
+            return new FloatFeatureMatrix(rows.toArray(new float[0][]), cols);
+        }
+    }
+}
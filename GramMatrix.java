@@ -0,0 +1,181 @@
+import java.io.Serializable;
+
+/**
+ * Normal equation statistics for Linear Regression
+ * Accumulates X^T X, X^T y, y^T y and the row count with a bias column in front,
+ * so that θ = (X^T X + λI)^(-1) X^T y can be solved without keeping the rows.
+ * Statistics of disjoint row blocks can be added (merge) or subtracted.
+ */
+public class GramMatrix implements Serializable {
+    private static final long serialVersionUID = 1L; // Written to the shard partial files
+    private final int dim;        // numFeatures + 1 (bias)
+    private final double[][] xtx; // only the upper triangle is accumulated
+    private final double[] xty;
+    private double yty;
+    private long count;
+
+    public GramMatrix(int numFeatures) {
+        this.dim = numFeatures + 1;
+        this.xtx = new double[dim][dim];
+        this.xty = new double[dim];
+    }
+
+    /**
+     * Add one sample (features without bias)
+     */
+    public void add(double[] features, double y) {
+        int n = features.length;
+
+        // Bias row
+        xtx[0][0] += 1.0;
+        for (int j = 0; j < n; j++) {
+            xtx[0][j + 1] += features[j];
+        }
+        xty[0] += y;
+
+        for (int i = 0; i < n; i++) {
+            double xi = features[i];
+            if (xi == 0.0) continue;
+            double[] row = xtx[i + 1];
+            for (int j = i; j < n; j++) {
+                row[j + 1] += xi * features[j];
+            }
+            xty[i + 1] += xi * y;
+        }
+
+        yty += y * y;
+        count++;
+    }
+
+    /**
+     * Add rows [from, to) of a feature matrix
+     */
+    public void addAll(double[][] X, double[] y, int from, int to) {
+        for (int i = from; i < to; i++) {
+            add(X[i], y[i]);
+        }
+    }
+
+    /**
+     * Add row i of a feature matrix, using only its non-zero entries
+     * @param cols Scratch buffer (length >= X.cols())
+     * @param values Scratch buffer (length >= X.cols())
+     */
+    public void add(FeatureMatrix X, int i, double y, int[] cols, double[] values) {
+        int entries = X.rowEntries(i, cols, values);
+
+        xtx[0][0] += 1.0;
+        for (int a = 0; a < entries; a++) {
+            int ca = cols[a] + 1;
+            double va = values[a];
+            xtx[0][ca] += va;
+            double[] row = xtx[ca];
+            for (int b = a; b < entries; b++) {
+                row[cols[b] + 1] += va * values[b];
+            }
+            xty[ca] += va * y;
+        }
+        xty[0] += y;
+
+        yty += y * y;
+        this.count++;
+    }
+
+    /**
+     * Add rows [from, to) of any feature storage
+     */
+    public void addAll(FeatureMatrix X, double[] y, int from, int to) {
+        int[] cols = new int[X.cols()];
+        double[] values = new double[X.cols()];
+        for (int i = from; i < to; i++) {
+            add(X, i, y[i], cols, values);
+        }
+    }
+
+    /**
+     * Add the statistics of another row block
+     */
+    public void merge(GramMatrix other) {
+        combine(other, 1.0);
+    }
+
+    /**
+     * Remove the statistics of a row block that was previously added
+     */
+    public void subtract(GramMatrix other) {
+        combine(other, -1.0);
+    }
+
+    private void combine(GramMatrix other, double sign) {
+        if (other.dim != dim) {
+            throw new IllegalArgumentException("Gram dimension mismatch: " + other.dim + " vs " + dim);
+        }
+        for (int i = 0; i < dim; i++) {
+            for (int j = i; j < dim; j++) {
+                xtx[i][j] += sign * other.xtx[i][j];
+            }
+            xty[i] += sign * other.xty[i];
+        }
+        yty += sign * other.yty;
+        count += (long) sign * other.count;
+    }
+
+    public GramMatrix copy() {
+        GramMatrix result = new GramMatrix(dim - 1);
+        result.merge(this);
+        return result;
+    }
+
+    /**
+     * Full symmetric X^T X (copy)
+     */
+    public double[][] getXtX() {
+        double[][] result = new double[dim][dim];
+        for (int i = 0; i < dim; i++) {
+            for (int j = i; j < dim; j++) {
+                result[i][j] = xtx[i][j];
+                result[j][i] = xtx[i][j];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * X^T y (copy)
+     */
+    public double[] getXty() {
+        return xty.clone();
+    }
+
+    public double getYty() {
+        return yty;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public int getDim() {
+        return dim;
+    }
+
+    /**
+     * Sum of squared errors of θ on the rows in this block, computed from the statistics only:
+     * SSE = θ^T (X^T X) θ - 2 θ^T X^T y + y^T y
+     */
+    public double sumSquaredError(double[] theta) {
+        double quad = 0;
+        for (int i = 0; i < dim; i++) {
+            double ti = theta[i];
+            quad += xtx[i][i] * ti * ti;
+            for (int j = i + 1; j < dim; j++) {
+                quad += 2 * xtx[i][j] * ti * theta[j];
+            }
+        }
+        double cross = 0;
+        for (int i = 0; i < dim; i++) {
+            cross += theta[i] * xty[i];
+        }
+        return Math.max(0, quad - 2 * cross + yty);
+    }
+}
@@ -0,0 +1,274 @@
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Recursive multi-month forecast for every account
+ *
+ * Step 1 scores each account's latest row. Every later step predicts month
+ * t+1 from the features of month t, with the target-dependent features
+ * rebuilt from the forecast history:
+ *   <Target>_Lag<k>                     value of the target k months earlier
+ *   <Target>_Roll<w> / _MA<w> / _Mean<w>  mean of the last w months
+ *   <Target> (another model's target)   latest value of that target
+ * All other features are carried forward unchanged.
+ *
+ * Accounts are processed in parallel batches. Each batch keeps its feature
+ * rows and target history in fixed buffers that are updated in place from
+ * one month to the next, and finished batches are written to the CSV in order.
+ */
+public class HorizonForecaster {
+    private static final int BATCH_SIZE = 4096;
+    private static final Pattern WINDOW_FEATURE =
+        Pattern.compile("^(.+?)_(?i)(lag|roll|rolling|ma|mean)_?(\\d+)$");
+
+    private final LinearRegression[] models;
+    private final DataLoader.Dataset[] datasets;
+    private final String[] targets;
+    private final int horizon;
+
+    // Per target: columns rebuilt from the history (kind, source target, window)
+    private final int[][] derivedCols;
+    private final int[][] derivedSource;
+    private final int[][] derivedWindow;  // > 0: lag k, < 0: rolling mean over -w months, 0: latest value
+    private final int historyLength;
+
+    public HorizonForecaster(LinearRegression[] models, DataLoader.Dataset[] datasets, int horizon) {
+        if (horizon < 1) {
+            throw new IllegalArgumentException("Horizon must be at least 1 month, got " + horizon);
+        }
+        this.models = models;
+        this.datasets = datasets;
+        this.horizon = horizon;
+        this.targets = new String[datasets.length];
+        for (int t = 0; t < datasets.length; t++) {
+            targets[t] = datasets[t].targetCol;
+        }
+
+        derivedCols = new int[targets.length][];
+        derivedSource = new int[targets.length][];
+        derivedWindow = new int[targets.length][];
+        int maxWindow = 1;
+        for (int t = 0; t < targets.length; t++) {
+            List<int[]> found = new ArrayList<>();
+            String[] names = datasets[t].featureNames;
+            for (int j = 0; names != null && j < names.length; j++) {
+                int[] derived = parseDerived(names[j]);
+                if (derived != null) {
+                    found.add(new int[] {j, derived[0], derived[1]});
+                    maxWindow = Math.max(maxWindow, Math.abs(derived[1]));
+                }
+            }
+            derivedCols[t] = found.stream().mapToInt(d -> d[0]).toArray();
+            derivedSource[t] = found.stream().mapToInt(d -> d[1]).toArray();
+            derivedWindow[t] = found.stream().mapToInt(d -> d[2]).toArray();
+        }
+        this.historyLength = maxWindow;
+    }
+
+    /**
+     * {source target, window} if the column is derived from a target, else null
+     */
+    private int[] parseDerived(String column) {
+        for (int u = 0; u < targets.length; u++) {
+            if (column.equals(targets[u])) {
+                return new int[] {u, 0};
+            }
+        }
+        Matcher matcher = WINDOW_FEATURE.matcher(column);
+        if (!matcher.matches()) {
+            return null;
+        }
+        int source = Arrays.asList(targets).indexOf(matcher.group(1));
+        if (source < 0) {
+            return null;
+        }
+        int window = Integer.parseInt(matcher.group(3));
+        if (window < 1) {
+            return null;
+        }
+        boolean lag = matcher.group(2).equalsIgnoreCase("lag");
+        return new int[] {source, lag ? window : -window};
+    }
+
+    /**
+     * Number of features rebuilt from the forecast history, per target
+     */
+    public int derivedFeatureCount(int target) {
+        return derivedCols[target].length;
+    }
+
+    /**
+     * Forecast every account and write one CSV row per (account, month)
+     * @param outputs Converts a prediction of target t to output units (e.g. denormalize)
+     * @return number of accounts forecast
+     */
+    public int run(String filename, OutputTransform outputs) throws IOException {
+        int[] starts = latestRows(datasets[0]);
+        int batches = (starts.length + BATCH_SIZE - 1) / BATCH_SIZE;
+        int parallelism = Runtime.getRuntime().availableProcessors();
+
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(filename), 1 << 16)) {
+            writer.write("Account_Key,Year,Month,Step");
+            for (String target : targets) {
+                writer.write("," + target);
+            }
+            writer.newLine();
+
+            // Forecast a group of batches in parallel, then write them in order
+            for (int group = 0; group < batches; group += parallelism) {
+                List<StringBuilder> results = IntStream.range(group, Math.min(batches, group + parallelism))
+                    .parallel()
+                    .mapToObj(b -> forecastBatch(starts, b * BATCH_SIZE,
+                                                 Math.min(starts.length, (b + 1) * BATCH_SIZE), outputs))
+                    .collect(Collectors.toList());
+                for (StringBuilder result : results) {
+                    writer.append(result);
+                }
+            }
+        }
+        return starts.length;
+    }
+
+    /**
+     * Latest row of every account, in Account_Key order
+     */
+    private static int[] latestRows(DataLoader.Dataset dataset) {
+        AccountSeries series = dataset.getSeries();
+        int[] rows = new int[series.accounts()];
+        for (int a = 0; a < rows.length; a++) {
+            rows[a] = series.row(series.end(a) - 1);
+        }
+        return rows;
+    }
+
+    private StringBuilder forecastBatch(int[] starts, int from, int to, OutputTransform outputs) {
+        int size = to - from;
+        int numTargets = targets.length;
+        DataLoader.Dataset base = datasets[0];
+
+        // Buffers reused by every month of the horizon
+        double[][][] features = new double[numTargets][size][];
+        double[][][] history = new double[numTargets][size][historyLength]; // history[t][a][k-1] = value k months back
+        boolean[][] present = new boolean[numTargets][size];
+        int[] monthIds = new int[size];
+        boolean[] advance = new boolean[size]; // Latest row already has a target: forecast starts one month later
+
+        for (int a = 0; a < size; a++) {
+            int row = starts[from + a];
+            int key = base.accountKeys[row];
+            int year = base.years[row];
+            int month = base.months[row];
+            monthIds[a] = monthId(year, month);
+            advance[a] = base.y[row] != null;
+
+            for (int t = 0; t < numTargets; t++) {
+                DataLoader.Dataset dataset = datasets[t];
+                int idx = t == 0 ? row : dataset.indexOf(key, year, month);
+                if (idx < 0) continue;
+                present[t][a] = true;
+                features[t][a] = dataset.matrix.getRow(idx).clone(); // Dense getRow shares the stored row
+
+                // Actual history; when the latest row is already known it becomes lag 1
+                int offset = advance[a] ? 0 : 1;
+                for (int k = 0; k < historyLength; k++) {
+                    int back = monthIds[a] - (k + offset);
+                    int prev = dataset.indexOf(key, back / 12, back % 12 + 1);
+                    history[t][a][k] = prev >= 0 && dataset.y[prev] != null ? dataset.y[prev] : Double.NaN;
+                }
+            }
+            if (advance[a]) {
+                monthIds[a]++;
+            }
+        }
+
+        StringBuilder[] lines = new StringBuilder[size]; // Output grouped by account
+        for (int a = 0; a < size; a++) {
+            lines[a] = new StringBuilder(horizon * 64);
+        }
+        double[] predictions = new double[numTargets];
+        for (int step = 1; step <= horizon; step++) {
+            for (int a = 0; a < size; a++) {
+                // The file's own features are used as-is for a month that already has a row
+                if (step > 1 || advance[a]) {
+                    for (int t = 0; t < numTargets; t++) {
+                        if (present[t][a]) {
+                            rebuildDerived(t, features[t][a], history, a);
+                        }
+                    }
+                }
+                for (int t = 0; t < numTargets; t++) {
+                    predictions[t] = present[t][a] ? models[t].predictSingle(features[t][a]) : Double.NaN;
+                }
+
+                int key = base.accountKeys[starts[from + a]];
+                StringBuilder out = lines[a];
+                out.append(key).append(',').append(monthIds[a] / 12).append(',')
+                   .append(monthIds[a] % 12 + 1).append(',').append(step);
+                for (int t = 0; t < numTargets; t++) {
+                    out.append(',');
+                    if (!Double.isNaN(predictions[t])) {
+                        DecimalText.appendFixed(out, outputs.apply(t, predictions[t]));
+                    }
+                }
+                out.append('\n');
+
+                // Shift the history: this month's forecast becomes lag 1 of the next
+                for (int t = 0; t < numTargets; t++) {
+                    double[] h = history[t][a];
+                    System.arraycopy(h, 0, h, 1, historyLength - 1);
+                    h[0] = predictions[t];
+                }
+                monthIds[a]++;
+            }
+        }
+
+        StringBuilder out = new StringBuilder(size * horizon * 64);
+        for (StringBuilder line : lines) {
+            out.append(line);
+        }
+        return out;
+    }
+
+    private void rebuildDerived(int t, double[] features, double[][][] history, int a) {
+        for (int d = 0; d < derivedCols[t].length; d++) {
+            double[] h = history[derivedSource[t][d]][a];
+            int window = derivedWindow[t][d];
+            double value;
+            if (window >= 0) {
+                value = h[Math.max(window, 1) - 1];
+            } else {
+                double sum = 0;
+                int count = 0;
+                for (int k = 0; k < -window; k++) {
+                    if (!Double.isNaN(h[k])) {
+                        sum += h[k];
+                        count++;
+                    }
+                }
+                value = count > 0 ? sum / count : Double.NaN;
+            }
+            if (!Double.isNaN(value)) {
+                features[derivedCols[t][d]] = value;
+            }
+        }
+    }
+
+    private static int monthId(int year, int month) {
+        return year * 12 + (month - 1);
+    }
+
+    /**
+     * Maps a model output of target t to the value written to the file
+     */
+    public interface OutputTransform {
+        double apply(int target, double prediction);
+    }
+}
@@ -0,0 +1,199 @@
+import java.util.Random;
+
+/**
+ * Benchmark of the DenseKernels against the textbook jagged-array loops
+ * previously used by LinearRegression (i-j-k multiply, transpose, X^T X via
+ * transpose + multiply, Gauss-Jordan inverse).
+ *
+ * Usage: java KernelBenchmark [n1,n2,...]   (default 10,50,100,200,500,1000,2000)
+ * Square n x n inputs; the X^T X case uses an n x n data matrix plus bias.
+ */
+public class KernelBenchmark {
+    private static final long MIN_TIME_NANOS = 200_000_000L; // Repeat small cases for at least 200 ms
+
+    public static void main(String[] args) {
+        int[] sizes = {10, 50, 100, 200, 500, 1000, 2000};
+        if (args.length > 0) {
+            String[] parts = args[0].split(",");
+            sizes = new int[parts.length];
+            for (int i = 0; i < parts.length; i++) {
+                sizes[i] = Integer.parseInt(parts[i].trim());
+            }
+        }
+
+        System.out.println("=".repeat(80));
+        System.out.println("DENSE KERNEL BENCHMARK (naive jagged loops vs cache-blocked flat kernels)");
+        System.out.println("=".repeat(80));
+        System.out.printf("%-10s %6s %14s %14s %10s %12s\n", "Kernel", "n", "Naive (ms)", "Blocked (ms)", "Speedup", "Max |diff|");
+
+        Random random = new Random(42);
+        for (int n : sizes) {
+            double[][] a = randomMatrix(n, n, random);
+            double[][] b = randomMatrix(n, n, random);
+            double[] aFlat = DenseKernels.flatten(a);
+            double[] bFlat = DenseKernels.flatten(b);
+
+            // GEMM
+            double[][][] naiveC = new double[1][][];
+            double[][] blockedC = new double[1][];
+            double naive = time(() -> naiveC[0] = naiveMultiply(a, b));
+            double blocked = time(() -> blockedC[0] = DenseKernels.gemm(aFlat, bFlat, n, n, n));
+            report("GEMM", n, naive, blocked, maxDiff(naiveC[0], blockedC[0]));
+
+            // Transpose
+            double[][][] naiveT = new double[1][][];
+            double[][] blockedT = new double[1][];
+            naive = time(() -> naiveT[0] = naiveTranspose(a));
+            blocked = time(() -> blockedT[0] = DenseKernels.transpose(aFlat, n, n));
+            report("Transpose", n, naive, blocked, maxDiff(naiveT[0], blockedT[0]));
+
+            // X^T X with bias column
+            double[][][] naiveG = new double[1][][];
+            double[][] blockedG = new double[1][];
+            naive = time(() -> {
+                double[][] xb = naiveAddBias(a);
+                naiveG[0] = naiveMultiply(naiveTranspose(xb), xb);
+            });
+            blocked = time(() -> blockedG[0] = DenseKernels.syrkBias(a));
+            report("X^T X", n, naive, blocked, maxDiff(naiveG[0], blockedG[0]));
+
+            // Ridge solve (X^T X + I) θ = X^T y
+            double[] rhs = new double[n + 1];
+            for (int i = 0; i < rhs.length; i++) rhs[i] = random.nextGaussian();
+            double[][] system = naiveG[0];
+            for (int i = 0; i < system.length; i++) system[i][i] += 1.0;
+            double[] systemFlat = DenseKernels.flatten(system);
+            double[][] naiveX = new double[1][];
+            double[][] blockedX = new double[1][];
+            naive = time(() -> naiveX[0] = naiveMultiplyVector(naiveInverse(system), rhs));
+            blocked = time(() -> blockedX[0] = DenseKernels.choleskySolve(systemFlat, rhs, n + 1));
+            double diff = 0;
+            for (int i = 0; i < rhs.length; i++) {
+                diff = Math.max(diff, Math.abs(naiveX[0][i] - blockedX[0][i]));
+            }
+            report("Solve", n + 1, naive, blocked, diff);
+        }
+        System.out.println("=".repeat(80));
+    }
+
+    private static void report(String kernel, int n, double naive, double blocked, double diff) {
+        System.out.printf("%-10s %6d %14.3f %14.3f %9.1fx %12.2e\n", kernel, n, naive, blocked, naive / blocked, diff);
+    }
+
+    /**
+     * Average milliseconds per run (one warm-up run, then repeated for at least MIN_TIME_NANOS)
+     */
+    private static double time(Runnable task) {
+        task.run();
+        int runs = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            task.run();
+            runs++;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < MIN_TIME_NANOS);
+        return elapsed / 1e6 / runs;
+    }
+
+    private static double[][] randomMatrix(int rows, int cols, Random random) {
+        double[][] m = new double[rows][cols];
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                m[i][j] = random.nextGaussian();
+            }
+        }
+        return m;
+    }
+
+    private static double maxDiff(double[][] jagged, double[] flat) {
+        int cols = jagged[0].length;
+        double diff = 0;
+        for (int i = 0; i < jagged.length; i++) {
+            for (int j = 0; j < cols; j++) {
+                diff = Math.max(diff, Math.abs(jagged[i][j] - flat[i * cols + j]));
+            }
+        }
+        return diff;
+    }
+
+    // ============ REFERENCE (TEXTBOOK) IMPLEMENTATIONS ============
+
+    private static double[][] naiveAddBias(double[][] X) {
+        int m = X.length;
+        int n = X[0].length;
+        double[][] result = new double[m][n + 1];
+        for (int i = 0; i < m; i++) {
+            result[i][0] = 1.0;
+            for (int j = 0; j < n; j++) {
+                result[i][j + 1] = X[i][j];
+            }
+        }
+        return result;
+    }
+
+    private static double[][] naiveTranspose(double[][] matrix) {
+        int rows = matrix.length;
+        int cols = matrix[0].length;
+        double[][] result = new double[cols][rows];
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                result[j][i] = matrix[i][j];
+            }
+        }
+        return result;
+    }
+
+    private static double[][] naiveMultiply(double[][] A, double[][] B) {
+        int rowsA = A.length;
+        int colsA = A[0].length;
+        int colsB = B[0].length;
+        double[][] result = new double[rowsA][colsB];
+        for (int i = 0; i < rowsA; i++) {
+            for (int j = 0; j < colsB; j++) {
+                for (int k = 0; k < colsA; k++) {
+                    result[i][j] += A[i][k] * B[k][j];
+                }
+            }
+        }
+        return result;
+    }
+
+    private static double[] naiveMultiplyVector(double[][] A, double[] b) {
+        double[] result = new double[A.length];
+        for (int i = 0; i < A.length; i++) {
+            for (int j = 0; j < b.length; j++) {
+                result[i] += A[i][j] * b[j];
+            }
+        }
+        return result;
+    }
+
+    private static double[][] naiveInverse(double[][] matrix) {
+        int n = matrix.length;
+        double[][] augmented = new double[n][2 * n];
+        for (int i = 0; i < n; i++) {
+            System.arraycopy(matrix[i], 0, augmented[i], 0, n);
+            augmented[i][n + i] = 1.0;
+        }
+        for (int i = 0; i < n; i++) {
+            double pivot = augmented[i][i];
+            for (int j = 0; j < 2 * n; j++) {
+                augmented[i][j] /= pivot;
+            }
+            for (int k = 0; k < n; k++) {
+                if (k != i) {
+                    double factor = augmented[k][i];
+                    for (int j = 0; j < 2 * n; j++) {
+                        augmented[k][j] -= factor * augmented[i][j];
+                    }
+                }
+            }
+        }
+        double[][] result = new double[n][n];
+        for (int i = 0; i < n; i++) {
+            System.arraycopy(augmented[i], n, result[i], 0, n);
+        }
+        return result;
+    }
+}
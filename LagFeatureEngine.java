@@ -0,0 +1,283 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Lag, rolling and month-over-month features computed from the account-clustered layout
+ *
+ * Spec (comma separated) uses the column names it produces, e.g.
+ * "Total_Monthly_Spend_Lag1,Total_Monthly_Spend_Roll3,Amount_Food_Std6,Amount_Food_Delta":
+ *   <col>_Lag<k>    value k months earlier
+ *   <col>_Roll<w>   mean of the previous w months (also _Mean<w> / _MA<w>)
+ *   <col>_Std<w>    standard deviation of the previous w months
+ *   <col>_Min<w>, <col>_Max<w>
+ *   <col>_Delta     change between the previous two months
+ * <col> is a feature column or the target. Every term only reads months
+ * before the row's month, so target lags do not leak the label and future
+ * rows get their features from known history. Lag and rolling names follow
+ * the convention of HorizonForecaster, which rebuilds them from forecasts.
+ *
+ * The source columns are gathered into contiguous arrays in (Account_Key,
+ * month) order, then each term runs one sequential pass per account with a
+ * sliding month window. Rolling terms need all w previous months; rows
+ * without the history a term needs (e.g. an account's first months) are
+ * dropped. The result keeps the original row order.
+ */
+public class LagFeatureEngine {
+    private static final Pattern TERM =
+        Pattern.compile("^(.+?)_(?i)(lag|roll|rolling|ma|mean|std|min|max|delta)_?(\\d*)$");
+
+    private static final int LAG = 0;
+    private static final int MEAN = 1;
+    private static final int STD = 2;
+    private static final int MIN = 3;
+    private static final int MAX = 4;
+    private static final int DELTA = 5;
+
+    private final String[] names;
+    private final String[] sources;
+    private final int[] kinds;
+    private final int[] windows;
+
+    private LagFeatureEngine(String[] names, String[] sources, int[] kinds, int[] windows) {
+        this.names = names;
+        this.sources = sources;
+        this.kinds = kinds;
+        this.windows = windows;
+    }
+
+    public static LagFeatureEngine fromSpec(String spec) {
+        List<String> names = new ArrayList<>();
+        List<String> sources = new ArrayList<>();
+        List<int[]> terms = new ArrayList<>();
+        for (String part : spec.split(",")) {
+            String term = part.trim();
+            if (term.isEmpty()) continue;
+            Matcher matcher = TERM.matcher(term);
+            if (!matcher.matches()) {
+                throw new IllegalArgumentException("Unknown lag feature: " + term
+                    + " (expected <col>_Lag<k>, _Roll<w>, _Std<w>, _Min<w>, _Max<w> or _Delta)");
+            }
+            String kindName = matcher.group(2).toLowerCase(Locale.ROOT);
+            int kind = kindName.equals("lag") ? LAG
+                : kindName.equals("std") ? STD
+                : kindName.equals("min") ? MIN
+                : kindName.equals("max") ? MAX
+                : kindName.equals("delta") ? DELTA
+                : MEAN;
+            int window = kind == DELTA ? 2 : matcher.group(3).isEmpty() ? 0 : Integer.parseInt(matcher.group(3));
+            if (window < 1) {
+                throw new IllegalArgumentException("Lag feature needs a window of at least 1 month: " + term);
+            }
+            names.add(term);
+            sources.add(matcher.group(1));
+            terms.add(new int[] {kind, window});
+        }
+        return new LagFeatureEngine(names.toArray(new String[0]), sources.toArray(new String[0]),
+                                    terms.stream().mapToInt(t -> t[0]).toArray(),
+                                    terms.stream().mapToInt(t -> t[1]).toArray());
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    /**
+     * Dataset with the lag features appended, in the original row order,
+     * keeping only rows where every term has enough history
+     */
+    public DataLoader.Dataset augment(DataLoader.Dataset dataset, DataLoader.Storage storage) {
+        AccountSeries series = dataset.getSeries();
+        int n = series.rows();
+        int base = dataset.matrix.cols();
+
+        // Source columns in position order (NaN = missing or future target)
+        double[][] columns = new double[names.length][];
+        for (int t = 0; t < names.length; t++) {
+            for (int u = 0; u < t && columns[t] == null; u++) {
+                if (sources[u].equals(sources[t])) columns[t] = columns[u];
+            }
+            if (columns[t] == null) {
+                columns[t] = gather(dataset, series, sources[t]);
+            }
+        }
+
+        double[][] values = new double[names.length][n];
+        for (int t = 0; t < names.length; t++) {
+            for (int a = 0; a < series.accounts(); a++) {
+                computeAccount(series, series.start(a), series.end(a), columns[t], kinds[t], windows[t], values[t]);
+            }
+        }
+
+        // Kept positions in original row order, so the ordered train/val/test
+        // split selects the same rows as without lag features
+        List<Integer> kept = new ArrayList<>();
+        for (int p = 0; p < n; p++) {
+            boolean complete = true;
+            for (int t = 0; t < names.length && complete; t++) {
+                complete = !Double.isNaN(values[t][p]);
+            }
+            if (complete) kept.add(p);
+        }
+        if (!series.isIdentity()) {
+            kept.sort((a, b) -> Integer.compare(series.row(a), series.row(b)));
+        }
+
+        int size = kept.size();
+        int[] keys = new int[size];
+        int[] years = new int[size];
+        int[] months = new int[size];
+        Double[] y = new Double[size];
+        FeatureMatrix.Builder builder = DataLoader.newBuilder(storage, base + names.length, dataset.targetCol + ".lags");
+        double[] row = new double[base + names.length];
+        StreamingStats targetStats = new StreamingStats();
+        for (int i = 0; i < size; i++) {
+            int p = kept.get(i);
+            int r = series.row(p);
+            keys[i] = dataset.accountKeys[r];
+            years[i] = dataset.years[r];
+            months[i] = dataset.months[r];
+            y[i] = dataset.y[r];
+            if (y[i] != null) targetStats.add(y[i]);
+            for (int j = 0; j < base; j++) {
+                row[j] = dataset.matrix.get(r, j);
+            }
+            for (int t = 0; t < names.length; t++) {
+                row[base + t] = values[t][p];
+            }
+            builder.addRow(row);
+        }
+
+        DataLoader.Dataset result = new DataLoader.Dataset(keys, years, months, builder.build(), y, dataset.targetCol);
+        String[] featureNames = new String[base + names.length];
+        for (int j = 0; j < base; j++) {
+            featureNames[j] = dataset.featureNames != null ? dataset.featureNames[j] : "x" + j;
+        }
+        System.arraycopy(names, 0, featureNames, base, names.length);
+        result.featureNames = featureNames;
+        result.targetStats = targetStats;
+        return result;
+    }
+
+    private static double[] gather(DataLoader.Dataset dataset, AccountSeries series, String source) {
+        int col = dataset.featureIndex(source);
+        if (col < 0 && !source.equals(dataset.targetCol)) {
+            throw new IllegalArgumentException("Unknown lag feature column: " + source);
+        }
+        double[] values = new double[series.rows()];
+        for (int p = 0; p < values.length; p++) {
+            int r = series.row(p);
+            if (col >= 0) {
+                values[p] = dataset.matrix.get(r, col);
+            } else {
+                values[p] = dataset.y[r] != null ? dataset.y[r] : Double.NaN;
+            }
+        }
+        return values;
+    }
+
+    /**
+     * One term for the positions [start, end) of one account. The window of
+     * position p is [lo, hi): the positions with month in [m - w, m - 1].
+     * Both ends only move forward, so the rolling terms keep running state
+     * (sums, missing values, distinct months, a monotonic deque for min /
+     * max) and cost O(1) amortized per row. A rolling term is NaN unless
+     * every month of its window is present with a known value.
+     */
+    private static void computeAccount(AccountSeries series, int start, int end, double[] source,
+                                       int kind, int window, double[] out) {
+        // Sums of values minus a shift taken from the window, so the variance
+        // from the sum of squares does not lose precision; rebuilt after every
+        // w removals, which bounds the rounding drift at O(1) amortized cost
+        boolean sums = kind == MEAN || kind == STD;
+        double shift = Double.isNaN(source[start]) ? 0 : source[start];
+        double sum = 0, sumSq = 0;
+        int count = 0, missing = 0, months = 0, removed = 0;
+        // Positions in the window with increasing (MIN) / decreasing (MAX) values
+        int[] deque = kind == MIN || kind == MAX ? new int[end - start] : null;
+        double sign = kind == MIN ? 1 : -1;
+        int head = 0, tail = 0;
+
+        int lo = start, hi = start;
+        for (int p = start; p < end; p++) {
+            int month = series.monthId(p);
+            while (hi < p && series.monthId(hi) < month) {
+                if (hi == lo || series.monthId(hi) != series.monthId(hi - 1)) months++;
+                double v = source[hi];
+                if (Double.isNaN(v)) {
+                    missing++;
+                } else {
+                    sum += v - shift;
+                    sumSq += (v - shift) * (v - shift);
+                    count++;
+                    if (deque != null) {
+                        while (tail > head && sign * source[deque[tail - 1]] >= sign * v) tail--;
+                        deque[tail++] = hi;
+                    }
+                }
+                hi++;
+            }
+            while (lo < hi && series.monthId(lo) < month - window) {
+                if (lo + 1 == hi || series.monthId(lo + 1) != series.monthId(lo)) months--;
+                double v = source[lo];
+                if (Double.isNaN(v)) {
+                    missing--;
+                } else {
+                    sum -= v - shift;
+                    sumSq -= (v - shift) * (v - shift);
+                    count--;
+                    removed++;
+                }
+                if (deque != null && head < tail && deque[head] == lo) head++;
+                lo++;
+            }
+            if (sums && removed >= window) {
+                shift = Double.NaN;
+                sum = 0;
+                sumSq = 0;
+                for (int q = lo; q < hi; q++) {
+                    double v = source[q];
+                    if (Double.isNaN(v)) continue;
+                    if (Double.isNaN(shift)) shift = v;
+                    sum += v - shift;
+                    sumSq += (v - shift) * (v - shift);
+                }
+                if (Double.isNaN(shift)) shift = 0;
+                removed = 0;
+            }
+
+            double result = Double.NaN;
+            boolean full = missing == 0 && months == window;
+            switch (kind) {
+                case LAG:
+                    if (lo < hi && series.monthId(lo) == month - window) result = source[lo];
+                    break;
+                case DELTA:
+                    if (hi - lo >= 2 && series.monthId(hi - 1) == month - 1 && series.monthId(hi - 2) == month - 2) {
+                        result = source[hi - 1] - source[hi - 2];
+                    }
+                    break;
+                case STD:
+                    if (full) {
+                        double mean = sum / count;
+                        result = Math.sqrt(Math.max(0, sumSq / count - mean * mean));
+                    }
+                    break;
+                case MIN:
+                case MAX:
+                    if (full) result = source[deque[head]];
+                    break;
+                default:
+                    if (full) result = shift + sum / count;
+            }
+            out[p] = result;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.join(",", names);
+    }
+}
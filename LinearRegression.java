@@ -3,53 +3,333 @@ import java.util.Arrays;
 /**
  * Linear Regression implementation using Normal Equation method
  * Công thức: θ = (X^T * X)^(-1) * X^T * y
+ * For wide feature sets the ridge system can instead be solved matrix-free
+ * with preconditioned conjugate gradient (Solver.CONJUGATE_GRADIENT), or
+ * approximately on a CountSketch of the rows (Solver.SKETCH)
  */
 public class LinearRegression {
+    
+    /**
+     * How the ridge system (X^T * X + λI) θ = X^T * y is solved
+     */
+    public enum Solver {
+        NORMAL_EQUATION,     // Form X^T X and invert it: O(n³), exact
+        CONJUGATE_GRADIENT,  // Jacobi-preconditioned CG, streams over the rows, O(m·n) per iteration
+        SKETCH               // Solve on a CountSketch of the rows (one O(nnz) pass), optionally
+                             // refined to the exact solution by CG preconditioned with the sketch
+    }
+    
     private double[] theta; // Hệ số hồi quy (weights)
     private int numFeatures;
     private String modelName;
+    private double lambda = 0.01; // Ridge strength (small regularization to prevent singular matrix)
+    
+    // Iterative solver settings
+    private Solver solver = Solver.NORMAL_EQUATION;
+    private int maxIterations = 1000;
+    private double tolerance = 1e-10; // Stop when ||r|| / ||X^T y|| falls below this
+    private double[] convergenceHistory; // Relative residual after each CG iteration
+    
+    // Sketch solver settings
+    private int sketchRows = 0;           // 0 = CountSketch.defaultRows
+    private boolean sketchRefine = false;  // Refine the sketch solution with sketch-preconditioned CG
+    private long sketchSeed = 42;
+    private double sketchBound = Double.NaN; // Residual bound of the last sketch solve
+    private FeatureExpansion expansion;   // Extra terms after the base features (null = linear only)
     
     public LinearRegression(String modelName) {
         this.modelName = modelName;
     }
     
     /**
-     * Train model using Normal Equation with Ridge Regularization
+     * Train model using Ridge Regularization with the configured solver
      * @param X Feature matrix (m x n) - m samples, n features
      * @param y Target vector (m x 1)
      */
     public void train(double[][] X, double[] y) {
-        int m = X.length; // Số lượng samples
+        if (expansion == null && solver == Solver.NORMAL_EQUATION) {
+            trainNormalEquation(X, y);
+        } else {
+            train(new DenseFeatureMatrix(X), y);
+        }
+    }
+    
+    /**
+     * Train model on any feature storage (dense or sparse)
+     * Sparse matrices accumulate X^T * X from non-zeros only, O(Σ nnz_i²)
+     * With an expansion the extra terms are generated row by row while the
+     * Gram matrix (or the CG products) accumulate
+     */
+    public void train(FeatureMatrix X, double[] y) {
+        X = expand(X);
+        if (solver == Solver.CONJUGATE_GRADIENT) {
+            trainConjugateGradient(X, y);
+        } else if (solver == Solver.SKETCH) {
+            trainSketch(X, y);
+        } else if (X instanceof DenseFeatureMatrix) {
+            trainNormalEquation(((DenseFeatureMatrix) X).getArray(), y);
+        } else {
+            GramMatrix gram = new GramMatrix(X.cols());
+            gram.addAll(X, y, 0, X.rows());
+            fitGram(gram);
+            this.convergenceHistory = null;
+            System.out.println("[" + modelName + "] Training completed with Ridge regularization!");
+        }
+    }
+    
+    /**
+     * Train model using Normal Equation with Ridge Regularization
+     * X^T * X is formed with the cache-blocked SYRK kernel (bias column implied)
+     */
+    private void trainNormalEquation(double[][] X, double[] y) {
         int n = X[0].length; // Số lượng features
         this.numFeatures = n;
         
-        // Thêm cột bias (intercept) - cột toàn số 1 vào đầu
-        double[][] X_bias = addBiasColumn(X);
-        
-        // Tính X^T (transpose của X)
-        double[][] X_transpose = transpose(X_bias);
+        // Tính X^T * X và X^T * y với cột bias (intercept) ở đầu
+        double[] XtX = DenseKernels.syrkBias(X);
+        double[] Xty = DenseKernels.gemvTransposeBias(X, y);
         
-        // Tính X^T * X
-        double[][] XtX = multiply(X_transpose, X_bias);
+        // Tính θ = (X^T * X + λI)^(-1) * X^T * y
+        this.theta = solveRidge(XtX, Xty, n + 1);
+        this.convergenceHistory = null;
         
+        System.out.println("[" + modelName + "] Training completed with Ridge regularization!");
+        // System.out.println("Theta (coefficients): " + Arrays.toString(theta));
+    }
+    
+    /**
+     * Solve (X^T * X + λI) θ = X^T * y for a flat d x d X^T * X (modified in place).
+     * Cholesky is used since the ridge system is symmetric positive definite;
+     * Gauss-Jordan inversion remains the fallback for near-singular systems.
+     */
+    private double[] solveRidge(double[] XtX, double[] Xty, int d) {
         // Thêm Ridge regularization: (X^T * X + λI)
-        // λ = 0.01 (small regularization to prevent singular matrix)
-        double lambda = 0.01;
-        for (int i = 0; i < XtX.length; i++) {
-            XtX[i][i] += lambda;  // Add to diagonal
+        for (int i = 0; i < d; i++) {
+            XtX[i * d + i] += lambda;
         }
         
-        // Tính (X^T * X + λI)^(-1)
-        double[][] XtX_inv = inverse(XtX);
+        double[] solution = DenseKernels.choleskySolve(XtX, Xty, d);
+        if (solution != null) {
+            return solution;
+        }
         
-        // Tính X^T * y
-        double[] Xty = multiplyVector(X_transpose, y);
+        double[][] A = new double[d][d];
+        for (int i = 0; i < d; i++) {
+            System.arraycopy(XtX, i * d, A[i], 0, d);
+        }
+        return multiplyVector(inverse(A), Xty);
+    }
+    
+    /**
+     * Train model with Jacobi-preconditioned conjugate gradient on
+     * (X^T * X + λI) θ = X^T * y without forming X^T * X.
+     * Each iteration makes one streaming pass over the rows.
+     */
+    private void trainConjugateGradient(FeatureMatrix X, double[] y) {
+        int m = X.rows();
+        int n = X.cols();
+        this.numFeatures = n;
+        int d = n + 1; // bias + features
         
-        // Tính θ = (X^T * X + λI)^(-1) * X^T * y
-        this.theta = multiplyVector(XtX_inv, Xty);
+        // b = X^T * y and Jacobi preconditioner diag(X^T * X) + λ, in one pass
+        double[] b = new double[d];
+        double[] diag = new double[d];
+        int[] cols = new int[n];
+        double[] values = new double[n];
+        for (int i = 0; i < m; i++) {
+            X.addRowTo(i, y[i], b);
+            diag[0] += 1.0;
+            int count = X.rowEntries(i, cols, values);
+            for (int k = 0; k < count; k++) {
+                diag[cols[k] + 1] += values[k] * values[k];
+            }
+        }
+        for (int j = 0; j < d; j++) {
+            diag[j] += lambda;
+        }
+        conjugateGradient(X, b, new double[d], (r, z) -> {
+            for (int j = 0; j < d; j++) z[j] = r[j] / diag[j];
+        });
+        System.out.println("[" + modelName + "] Training completed with Ridge regularization!");
+    }
+    
+    /**
+     * Applies z = M^-1 r for a preconditioner M ≈ X^T X + λI
+     */
+    private interface Preconditioner {
+        void apply(double[] r, double[] z);
+    }
+    
+    /**
+     * Preconditioned CG on (X^T * X + λI) θ = b starting from x0;
+     * sets θ and the convergence history
+     */
+    private void conjugateGradient(FeatureMatrix X, double[] b, double[] x0, Preconditioner precond) {
+        int d = b.length;
+        double bNorm = Math.sqrt(dot(b, b));
+        if (bNorm == 0) {
+            this.theta = new double[d];
+            this.convergenceHistory = new double[0];
+            return;
+        }
+        
+        double[] x = x0.clone();
+        double[] Ap = new double[d];
+        double[] r = b.clone();
+        if (dot(x, x) > 0) {
+            applyNormalOperator(X, x, Ap);
+            for (int j = 0; j < d; j++) r[j] -= Ap[j];
+            System.out.printf("[%s] CG start: relative residual = %.3e\n", modelName, Math.sqrt(dot(r, r)) / bNorm);
+        }
+        double[] z = new double[d];
+        precond.apply(r, z);
+        double[] p = z.clone();
+        double rz = dot(r, z);
+        
+        double[] history = new double[maxIterations];
+        int iter = 0;
+        while (iter < maxIterations) {
+            applyNormalOperator(X, p, Ap);
+            double alpha = rz / dot(p, Ap);
+            for (int j = 0; j < d; j++) {
+                x[j] += alpha * p[j];
+                r[j] -= alpha * Ap[j];
+            }
+            
+            double residual = Math.sqrt(dot(r, r)) / bNorm;
+            history[iter++] = residual;
+            System.out.printf("[%s] CG iteration %d: relative residual = %.3e\n", modelName, iter, residual);
+            if (residual < tolerance) {
+                break;
+            }
+            
+            precond.apply(r, z);
+            double rzNew = dot(r, z);
+            double beta = rzNew / rz;
+            rz = rzNew;
+            for (int j = 0; j < d; j++) {
+                p[j] = z[j] + beta * p[j];
+            }
+        }
+        
+        this.theta = x;
+        this.convergenceHistory = Arrays.copyOf(history, iter);
         
+        if (iter > 0 && history[iter - 1] < tolerance) {
+            System.out.println("[" + modelName + "] CG converged after " + iter + " iterations");
+        } else {
+            System.out.println("[" + modelName + "] CG stopped after " + iter + 
+                               " iterations without reaching tolerance " + tolerance);
+        }
+    }
+    
+    /**
+     * Sketch-and-solve: compress the m rows to s CountSketch rows in one pass,
+     * then solve (SA^T SA + λI) θ = SA^T Sy. With refinement, X^T y is
+     * gathered in the same pass and CG on the exact system starts from the
+     * sketch solution, preconditioned by SA^T SA + λI (condition number of the
+     * preconditioned system ≤ ((1 + ε) / (1 - ε))², so few passes are needed).
+     * Without it, one more pass checks the sketch solution (sketchExcess).
+     */
+    private void trainSketch(FeatureMatrix X, double[] y) {
+        int m = X.rows();
+        int n = X.cols();
+        this.numFeatures = n;
+        int d = n + 1;
+        int s = sketchRows > 0 ? sketchRows : CountSketch.defaultRows(n);
+        
+        CountSketch sketch = new CountSketch(s, n, sketchSeed);
+        double[] b = new double[d]; // X_bias^T y, for the refinement or the check
+        for (int i = 0; i < m; i++) {
+            sketch.add(X, i, y[i]);
+            X.addRowTo(i, y[i], b);
+        }
+        
+        double[] gram = sketch.gram();
+        for (int i = 0; i < d; i++) {
+            gram[i * d + i] += lambda;
+        }
+        double[] factor = DenseKernels.cholesky(gram, d);
+        if (factor == null) {
+            throw new IllegalStateException("Sketch Gram matrix is not positive definite (" + s 
+                                            + " sketch rows for " + d + " unknowns): use more sketch rows");
+        }
+        this.theta = DenseKernels.choleskySolveFactored(factor, sketch.rhs(), d);
+        this.convergenceHistory = null;
+        this.sketchBound = sketch.residualBound();
+        
+        System.out.printf("[%s] CountSketch: %d rows -> %d sketch rows\n", modelName, m, s);
+        if (Double.isInfinite(sketchBound)) {
+            System.out.printf("[%s] No worst-case guarantee with %d sketch rows (needs %,d)\n",
+                             modelName, s, CountSketch.guaranteedRows(n));
+        } else {
+            System.out.printf("[%s] Worst case: ridge objective within factor %.3f of the exact solution (probability %.0f%%)\n",
+                             modelName, sketchBound * sketchBound, 100 * (1 - CountSketch.FAILURE_PROBABILITY));
+        }
+        
+        if (sketchRefine) {
+            conjugateGradient(X, b, theta, (r, z) ->
+                System.arraycopy(DenseKernels.choleskySolveFactored(factor, r, d), 0, z, 0, d));
+        } else {
+            System.out.printf("[%s] Check: ridge objective ≈ %.4f × the exact optimum\n",
+                             modelName, 1 + sketchExcess(X, y, b, factor));
+        }
         System.out.println("[" + modelName + "] Training completed with Ridge regularization!");
-        // System.out.println("Theta (coefficients): " + Arrays.toString(theta));
+    }
+    
+    /**
+     * A-posteriori check of the sketch solution θ in one pass. With the exact
+     * gradient r = (X_bias^T X_bias + λI) θ - X_bias^T y, the excess objective is
+     * f(θ) - f(θ*) = r^T (X_bias^T X_bias + λI)^-1 r; it is estimated with the
+     * factored sketch matrix in place of the exact one (off by at most the
+     * sketch's distortion). Returns the estimated (f(θ) - f(θ*)) / f(θ*).
+     */
+    private double sketchExcess(FeatureMatrix X, double[] y, double[] b, double[] factor) {
+        int d = b.length;
+        double[] r = new double[d];
+        double objective = 0;
+        for (int i = 0; i < X.rows(); i++) {
+            double prediction = X.dotRow(i, theta);
+            X.addRowTo(i, prediction, r);
+            objective += (prediction - y[i]) * (prediction - y[i]);
+        }
+        for (int j = 0; j < d; j++) {
+            r[j] += lambda * theta[j] - b[j];
+            objective += lambda * theta[j] * theta[j];
+        }
+        double excess = dot(r, DenseKernels.choleskySolveFactored(factor, r, d));
+        return objective > excess ? excess / (objective - excess) : Double.POSITIVE_INFINITY;
+    }
+    
+    /**
+     * out = (X_bias^T * X_bias + λI) * v, streaming row by row
+     */
+    private void applyNormalOperator(FeatureMatrix X, double[] v, double[] out) {
+        Arrays.fill(out, 0.0);
+        for (int i = 0; i < X.rows(); i++) {
+            X.addRowTo(i, X.dotRow(i, v), out);
+        }
+        for (int j = 0; j < v.length; j++) {
+            out[j] += lambda * v[j];
+        }
+    }
+    
+    private static double dot(double[] a, double[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+    
+    /**
+     * Train model from precomputed normal equation statistics
+     * θ = (X^T * X + λI)^(-1) * X^T * y
+     */
+    public void fitGram(GramMatrix gram) {
+        int d = gram.getDim();
+        this.theta = solveRidge(DenseKernels.flatten(gram.getXtX()), gram.getXty(), d);
+        this.numFeatures = d - 1;
     }
     
     /**
@@ -58,35 +338,55 @@ public class LinearRegression {
      * @return Predicted values
      */
     public double[] predict(double[][] X) {
-        int m = X.length;
-        double[][] X_bias = addBiasColumn(X);
+        return predict(new DenseFeatureMatrix(X));
+    }
+    
+    /**
+     * Predict target values for any feature storage (cost O(nnz) for sparse)
+     */
+    public double[] predict(FeatureMatrix X) {
+        X = expand(X);
+        int m = X.rows();
         double[] predictions = new double[m];
-        
         for (int i = 0; i < m; i++) {
-            predictions[i] = 0;
-            for (int j = 0; j < theta.length; j++) {
-                predictions[i] += theta[j] * X_bias[i][j];
-            }
+            predictions[i] = X.dotRow(i, theta);
         }
-        
         return predictions;
     }
     
     /**
-     * Predict single sample
+     * Predict single sample (base features; expansion terms are added on the fly)
      */
     public double predictSingle(double[] features) {
         double prediction = theta[0]; // bias
         for (int i = 0; i < features.length; i++) {
             prediction += theta[i + 1] * features[i];
         }
+        if (expansion != null) {
+            prediction += expansion.dot(features, theta, features.length + 1);
+        }
         return prediction;
     }
     
+    /**
+     * View of X with the expansion terms appended (X itself if there is no
+     * expansion or X is already expanded)
+     */
+    public FeatureMatrix expand(FeatureMatrix X) {
+        if (expansion == null || X instanceof ExpandedFeatureMatrix) {
+            return X;
+        }
+        return new ExpandedFeatureMatrix(X, expansion);
+    }
+    
     /**
      * Calculate Mean Squared Error
      */
     public double calculateMSE(double[][] X, double[] y) {
+        return calculateMSE(new DenseFeatureMatrix(X), y);
+    }
+    
+    public double calculateMSE(FeatureMatrix X, double[] y) {
         double[] predictions = predict(X);
         double mse = 0;
         for (int i = 0; i < y.length; i++) {
@@ -100,6 +400,10 @@ public class LinearRegression {
      * Calculate R-squared (coefficient of determination)
      */
     public double calculateR2(double[][] X, double[] y) {
+        return calculateR2(new DenseFeatureMatrix(X), y);
+    }
+    
+    public double calculateR2(FeatureMatrix X, double[] y) {
         double[] predictions = predict(X);
         
         // Tính mean của y
@@ -121,60 +425,6 @@ public class LinearRegression {
     
     // ============ UTILITY METHODS ============
     
-    /**
-     * Thêm cột bias (cột toàn số 1) vào đầu matrix
-     */
-    private double[][] addBiasColumn(double[][] X) {
-        int m = X.length;
-        int n = X[0].length;
-        double[][] X_bias = new double[m][n + 1];
-        
-        for (int i = 0; i < m; i++) {
-            X_bias[i][0] = 1.0; // Bias column
-            for (int j = 0; j < n; j++) {
-                X_bias[i][j + 1] = X[i][j];
-            }
-        }
-        return X_bias;
-    }
-    
-    /**
-     * Transpose matrix
-     */
-    private double[][] transpose(double[][] matrix) {
-        int rows = matrix.length;
-        int cols = matrix[0].length;
-        double[][] result = new double[cols][rows];
-        
-        for (int i = 0; i < rows; i++) {
-            for (int j = 0; j < cols; j++) {
-                result[j][i] = matrix[i][j];
-            }
-        }
-        return result;
-    }
-    
-    /**
-     * Nhân 2 ma trận
-     */
-    private double[][] multiply(double[][] A, double[][] B) {
-        int rowsA = A.length;
-        int colsA = A[0].length;
-        int colsB = B[0].length;
-        
-        double[][] result = new double[rowsA][colsB];
-        
-        for (int i = 0; i < rowsA; i++) {
-            for (int j = 0; j < colsB; j++) {
-                result[i][j] = 0;
-                for (int k = 0; k < colsA; k++) {
-                    result[i][j] += A[i][k] * B[k][j];
-                }
-            }
-        }
-        return result;
-    }
-    
     /**
      * Nhân ma trận với vector
      */
@@ -273,4 +523,65 @@ public class LinearRegression {
     public String getModelName() {
         return modelName;
     }
+    
+    public double getLambda() {
+        return lambda;
+    }
+    
+    public void setLambda(double lambda) {
+        this.lambda = lambda;
+    }
+    
+    public FeatureExpansion getExpansion() {
+        return expansion;
+    }
+    
+    /**
+     * Terms appended to the base features; set before training
+     */
+    public void setExpansion(FeatureExpansion expansion) {
+        this.expansion = expansion;
+    }
+    
+    /**
+     * Sketch size (0 = CountSketch.defaultRows) and whether the sketch
+     * solution is refined to the exact one by preconditioned CG
+     */
+    public void setSketchSettings(int sketchRows, boolean refine, long seed) {
+        this.sketchRows = sketchRows;
+        this.sketchRefine = refine;
+        this.sketchSeed = seed;
+    }
+    
+    /**
+     * Bound on √(ridge objective) of the last sketch solve relative to the
+     * exact solution (NaN if the sketch solver was not used, +∞ if none holds)
+     */
+    public double getSketchBound() {
+        return sketchBound;
+    }
+    
+    public Solver getSolver() {
+        return solver;
+    }
+    
+    public void setSolver(Solver solver) {
+        this.solver = solver;
+    }
+    
+    /**
+     * Iteration limit and relative residual tolerance for the CG solver
+     */
+    public void setIterativeSettings(int maxIterations, double tolerance) {
+        this.maxIterations = maxIterations;
+        this.tolerance = tolerance;
+    }
+    
+    /**
+     * Relative residual after each CG iteration of the last training run
+     * (null when the normal equation solver was used)
+     */
+    public double[] getConvergenceHistory() {
+        return convergenceHistory;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,216 @@
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Current-month aggregates per account, updated from raw transaction events
+ *
+ * Event line: Account_Key,timestamp,amount,category
+ *   timestamp  ISO local date-time (2025-12-03T21:15:00) or epoch seconds (UTC)
+ *   category   Food, Shopping, Entertainment, Transport, Utilities (others count
+ *              only towards the totals)
+ *
+ * Accounts are spread over STRIPES independently locked hash maps, so writers
+ * for different accounts rarely contend and a reader only locks one stripe to
+ * copy an account's aggregates. An event of a later month starts a new month
+ * for that account; events of an older month than the current one are ignored.
+ * Values are raw (VND, counts, shares); the model features are min-max
+ * scaled by the caller.
+ */
+public class LiveFeatureStore {
+    private static final int STRIPE_BITS = 6;
+    private static final int STRIPES = 1 << STRIPE_BITS;
+    private static final int NIGHT_START = 22; // Night transactions: 22:00 - 05:59
+    private static final int NIGHT_END = 6;
+
+    public static final String[] CATEGORIES = {"Food", "Shopping", "Entertainment", "Transport", "Utilities"};
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final AtomicLong clock = new AtomicLong(Long.MIN_VALUE); // Latest event time (epoch seconds)
+
+    private static class Stripe {
+        final Map<Integer, Aggregate> accounts = new HashMap<>();
+        long events;
+        long stale;
+    }
+
+    private static class Aggregate {
+        int monthId;
+        int count;
+        int nightCount;
+        double total;
+        final double[] amounts = new double[CATEGORIES.length];
+        final int[] counts = new int[CATEGORIES.length];
+        long lastTime;
+
+        void reset(int monthId) {
+            this.monthId = monthId;
+            count = 0;
+            nightCount = 0;
+            total = 0;
+            Arrays.fill(amounts, 0);
+            Arrays.fill(counts, 0);
+        }
+    }
+
+    /**
+     * Copy of one account's aggregates for its current month
+     */
+    public static class Snapshot {
+        public final int year;
+        public final int month;
+        public final int transactions;
+        public final LocalDateTime lastTransaction;
+        private final Map<String, Double> values;
+
+        Snapshot(int year, int month, int transactions, LocalDateTime lastTransaction, Map<String, Double> values) {
+            this.year = year;
+            this.month = month;
+            this.transactions = transactions;
+            this.lastTransaction = lastTransaction;
+            this.values = values;
+        }
+
+        /**
+         * Raw value of a monthly feature column, or NaN if it is not maintained live
+         */
+        public double value(String column) {
+            Double value = values.get(column);
+            return value != null ? value : Double.NaN;
+        }
+    }
+
+    public LiveFeatureStore() {
+        for (int s = 0; s < STRIPES; s++) {
+            stripes[s] = new Stripe();
+        }
+    }
+
+    /**
+     * Parse and apply one event line
+     * @return false if the line is not a valid event
+     */
+    public boolean accept(String line) {
+        String[] parts = line.split(",");
+        if (parts.length < 4) {
+            return false;
+        }
+        try {
+            int accountKey = Integer.parseInt(parts[0].trim());
+            String time = parts[1].trim();
+            LocalDateTime timestamp = time.contains("T") || time.contains("-")
+                ? LocalDateTime.parse(time.replace(' ', 'T'))
+                : LocalDateTime.ofEpochSecond(Long.parseLong(time), 0, ZoneOffset.UTC);
+            double amount = Double.parseDouble(parts[2].trim());
+            if (Double.isNaN(amount) || Double.isInfinite(amount)) {
+                return false;
+            }
+            add(accountKey, timestamp, amount, parts[3].trim());
+            return true;
+        } catch (NumberFormatException | DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    public void add(int accountKey, LocalDateTime timestamp, double amount, String category) {
+        int monthId = AccountSeries.monthId(timestamp.getYear(), timestamp.getMonthValue());
+        long time = timestamp.toEpochSecond(ZoneOffset.UTC);
+        int hour = timestamp.getHour();
+        int cat = category(category);
+
+        Stripe stripe = stripes[stripe(accountKey)];
+        synchronized (stripe) {
+            Aggregate agg = stripe.accounts.get(accountKey);
+            if (agg == null) {
+                agg = new Aggregate();
+                agg.reset(monthId);
+                stripe.accounts.put(accountKey, agg);
+            } else if (monthId > agg.monthId) {
+                agg.reset(monthId);
+            } else if (monthId < agg.monthId) {
+                stripe.stale++;
+                return;
+            }
+            stripe.events++;
+            agg.count++;
+            agg.total += amount;
+            if (hour >= NIGHT_START || hour < NIGHT_END) agg.nightCount++;
+            if (cat >= 0) {
+                agg.amounts[cat] += amount;
+                agg.counts[cat]++;
+            }
+            agg.lastTime = Math.max(agg.lastTime, time);
+        }
+        clock.accumulateAndGet(time, Math::max);
+    }
+
+    /**
+     * Current-month aggregates of an account, or null if it has no events
+     */
+    public Snapshot get(int accountKey) {
+        Stripe stripe = stripes[stripe(accountKey)];
+        int monthId, count, nightCount;
+        double total;
+        double[] amounts;
+        int[] counts;
+        long lastTime;
+        synchronized (stripe) {
+            Aggregate agg = stripe.accounts.get(accountKey);
+            if (agg == null) {
+                return null;
+            }
+            monthId = agg.monthId;
+            count = agg.count;
+            nightCount = agg.nightCount;
+            total = agg.total;
+            amounts = agg.amounts.clone();
+            counts = agg.counts.clone();
+            lastTime = agg.lastTime;
+        }
+
+        Map<String, Double> values = new HashMap<>();
+        values.put("Total_Monthly_Spend", total);
+        values.put("Frequency_Total", (double) count);
+        values.put("Pct_Night_Trans", count > 0 ? (double) nightCount / count : 0.0);
+        values.put("Days_Since_Last_Trans", Math.max(0, clock.get() - lastTime) / 86400.0);
+        for (int c = 0; c < CATEGORIES.length; c++) {
+            values.put("Amount_" + CATEGORIES[c], amounts[c]);
+            values.put("Frequency_" + CATEGORIES[c], (double) counts[c]);
+            values.put("Pct_" + CATEGORIES[c], total > 0 ? amounts[c] / total : 0.0);
+        }
+        return new Snapshot(monthId / 12, monthId % 12 + 1, count,
+                            LocalDateTime.ofEpochSecond(lastTime, 0, ZoneOffset.UTC), values);
+    }
+
+    /**
+     * Accounts with events, events applied and events ignored as older than the account's month
+     */
+    public long[] counters() {
+        long accounts = 0, events = 0, stale = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                accounts += stripe.accounts.size();
+                events += stripe.events;
+                stale += stripe.stale;
+            }
+        }
+        return new long[] {accounts, events, stale};
+    }
+
+    private static int stripe(int accountKey) {
+        return (accountKey * 0x9E3779B9) >>> (32 - STRIPE_BITS);
+    }
+
+    private static int category(String name) {
+        String lower = name.toLowerCase(Locale.ROOT);
+        for (int c = 0; c < CATEGORIES.length; c++) {
+            if (CATEGORIES[c].toLowerCase(Locale.ROOT).equals(lower)) return c;
+        }
+        return -1;
+    }
+}
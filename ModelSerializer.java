@@ -1,16 +1,59 @@
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * Utility class to save and load trained models
+ * File layout: theta (double[]), then an optional metadata map (String -> Serializable)
  */
 public class ModelSerializer {
     
+    // Metadata keys
+    public static final String META_METRICS = "metrics";                 // double[6]
+    public static final String META_DATA_FINGERPRINT = "dataFingerprint"; // Long
+    public static final String META_LAMBDA = "lambda";                   // Double
+    public static final String META_SCALER = "scaler";                   // double[] {min, max, mean, median}
+    public static final String META_SEGMENT_NAMES = "segmentNames";      // String[]
+    public static final String META_SEGMENT_COLUMNS = "segmentColumns";  // int[]
+    public static final String META_SEGMENT_WIDTHS = "segmentWidths";    // double[]
+    public static final String META_SEGMENT_MIN_ROWS = "segmentMinRows"; // Integer
+    public static final String META_SEGMENT_THETAS = "segmentThetas";    // HashMap<Long, double[]>
+    public static final String META_FEATURE_MASK = "featureMask";        // boolean[] (stepwise selection)
+    public static final String META_EXPANSION = "expansion";            // FeatureExpansion
+    public static final String META_LAG_FEATURES = "lagFeatures";       // String (-Dspending.lags spec)
+    
     /**
      * Save trained model to file
      */
     public static void saveModel(LinearRegression model, String filename) throws IOException {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(filename))) {
+        saveModel(model, filename, new HashMap<>());
+    }
+    
+    /**
+     * Save trained model together with metadata stored next to theta
+     */
+    public static void saveModel(LinearRegression model, String filename,
+                                 Map<String, Object> metadata) throws IOException {
+        saveModel(model, filename, metadata, true);
+    }
+    
+    /**
+     * Save trained model with metadata, optionally without console output.
+     * Written to a temporary file that replaces the model atomically, so an
+     * interrupted save never leaves a truncated model behind.
+     */
+    public static void saveModel(LinearRegression model, String filename,
+                                 Map<String, Object> metadata, boolean verbose) throws IOException {
+        File tmp = new File(filename + ".tmp");
+        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(tmp))) {
             oos.writeObject(model.getTheta());
+            oos.writeObject(new HashMap<>(metadata));
+        }
+        Files.move(tmp.toPath(), new File(filename).toPath(),
+                   StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        if (verbose) {
             System.out.println("[✓] Model saved: " + filename);
         }
     }
@@ -28,6 +71,29 @@ public class ModelSerializer {
         }
     }
     
+    /**
+     * Load trained model and its metadata from file
+     * Files written before metadata was added load with an empty map
+     */
+    @SuppressWarnings("unchecked")
+    public static SavedModel loadModelWithMetadata(String modelName, String filename) 
+            throws IOException, ClassNotFoundException {
+        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(filename))) {
+            double[] theta = (double[]) ois.readObject();
+            LinearRegression model = new LinearRegression(modelName);
+            model.setTheta(theta);
+            
+            Map<String, Object> metadata;
+            try {
+                metadata = (Map<String, Object>) ois.readObject();
+            } catch (EOFException e) {
+                metadata = new HashMap<>();
+            }
+            System.out.println("[✓] Model loaded: " + filename);
+            return new SavedModel(model, metadata);
+        }
+    }
+    
     /**
      * Check if model files exist
      */
@@ -51,4 +117,17 @@ public class ModelSerializer {
         }
         return true;
     }
+    
+    /**
+     * Model loaded from disk together with its metadata
+     */
+    public static class SavedModel {
+        public LinearRegression model;
+        public Map<String, Object> metadata;
+        
+        public SavedModel(LinearRegression model, Map<String, Object> metadata) {
+            this.model = model;
+            this.metadata = metadata;
+        }
+    }
 }
\ No newline at end of file
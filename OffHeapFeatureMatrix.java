@@ -0,0 +1,227 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Dense feature storage outside the Java heap
+ *
+ * Rows are stored back to back in fixed-size chunks of direct or memory-mapped
+ * buffers (one buffer holds at most 2 GB, so large datasets span several).
+ * The heap only holds the chunk handles and, for row subsets, an int row map,
+ * so the GC never scans or copies feature data and -Xmx does not have to grow
+ * with the dataset. In mapped mode the OS pages the data in and out of a file.
+ */
+public class OffHeapFeatureMatrix implements FeatureMatrix {
+    private static final long MAX_CHUNK_BYTES = 1L << 30;
+
+    private final DoubleBuffer[] chunks;
+    private final int cols;
+    private final int chunkShift;   // log2(rows per chunk)
+    private final int chunkMask;
+    private final int rows;
+    private final int[] rowMap;     // View rows -> stored rows (null = identity)
+
+    private OffHeapFeatureMatrix(DoubleBuffer[] chunks, int cols, int chunkShift, int rows, int[] rowMap) {
+        this.chunks = chunks;
+        this.cols = cols;
+        this.chunkShift = chunkShift;
+        this.chunkMask = (1 << chunkShift) - 1;
+        this.rows = rows;
+        this.rowMap = rowMap;
+    }
+
+    /**
+     * Rows per chunk as a power of two, keeping each chunk under MAX_CHUNK_BYTES
+     */
+    static int chunkShift(int cols) {
+        long rowBytes = Math.max(1, cols) * 8L;
+        int shift = 16;
+        while (shift > 0 && (rowBytes << shift) > MAX_CHUNK_BYTES) {
+            shift--;
+        }
+        return shift;
+    }
+
+    private int stored(int row) {
+        return rowMap == null ? row : rowMap[row];
+    }
+
+    private DoubleBuffer chunkOf(int storedRow) {
+        return chunks[storedRow >>> chunkShift];
+    }
+
+    private int offsetOf(int storedRow) {
+        return (storedRow & chunkMask) * cols;
+    }
+
+    @Override
+    public int rows() {
+        return rows;
+    }
+
+    @Override
+    public int cols() {
+        return cols;
+    }
+
+    @Override
+    public double get(int row, int col) {
+        int r = stored(row);
+        return chunkOf(r).get(offsetOf(r) + col);
+    }
+
+    @Override
+    public double dotRow(int row, double[] theta) {
+        int r = stored(row);
+        DoubleBuffer chunk = chunkOf(r);
+        int base = offsetOf(r);
+        double sum = theta[0];
+        for (int j = 0; j < cols; j++) {
+            sum += theta[j + 1] * chunk.get(base + j);
+        }
+        return sum;
+    }
+
+    @Override
+    public void addRowTo(int row, double alpha, double[] out) {
+        int r = stored(row);
+        DoubleBuffer chunk = chunkOf(r);
+        int base = offsetOf(r);
+        out[0] += alpha;
+        for (int j = 0; j < cols; j++) {
+            out[j + 1] += alpha * chunk.get(base + j);
+        }
+    }
+
+    @Override
+    public int rowEntries(int row, int[] cols, double[] values) {
+        int r = stored(row);
+        DoubleBuffer chunk = chunkOf(r);
+        int base = offsetOf(r);
+        int count = 0;
+        for (int j = 0; j < this.cols; j++) {
+            double value = chunk.get(base + j);
+            if (value != 0.0) {
+                cols[count] = j;
+                values[count] = value;
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public double[] getRow(int row) {
+        int r = stored(row);
+        double[] result = new double[cols];
+        chunkOf(r).get(offsetOf(r), result);
+        return result;
+    }
+
+    /**
+     * View of the given rows over the same off-heap chunks (nothing is copied)
+     */
+    @Override
+    public FeatureMatrix selectRows(int[] indices) {
+        int[] map = new int[indices.length];
+        for (int i = 0; i < indices.length; i++) {
+            map[i] = stored(indices[i]);
+        }
+        return new OffHeapFeatureMatrix(chunks, cols, chunkShift, map.length, map);
+    }
+
+    /**
+     * Off-heap bytes holding the rows of this matrix (views share them with their parent)
+     */
+    @Override
+    public long memoryBytes() {
+        return (long) rows * cols * 8;
+    }
+
+    /**
+     * Heap bytes used by this matrix (chunk handles and row map only)
+     */
+    public long heapBytes() {
+        return (long) chunks.length * 64 + (rowMap == null ? 0 : (long) rowMap.length * 4);
+    }
+
+    /**
+     * Appends rows into direct buffers, or into a memory-mapped file when one is given
+     */
+    public static class Builder implements FeatureMatrix.Builder {
+        private final int cols;
+        private final int chunkShift;
+        private final int chunkRows;
+        private final List<DoubleBuffer> chunks = new ArrayList<>();
+        private final FileChannel channel; // null for direct buffers
+        private DoubleBuffer current;
+        private int rows = 0;
+
+        /**
+         * Rows in direct (off-heap) buffers
+         */
+        public Builder(int cols) {
+            this(cols, null);
+        }
+
+        /**
+         * Rows in a new or empty memory-mapped file, or direct buffers if null.
+         * A file with data is refused rather than truncated: another process
+         * may still have it mapped.
+         */
+        public Builder(int cols, File file) {
+            this.cols = cols;
+            this.chunkShift = chunkShift(cols);
+            this.chunkRows = 1 << chunkShift;
+            if (file != null && file.length() > 0) {
+                throw new IllegalArgumentException("Backing file is not empty: " + file);
+            }
+            try {
+                this.channel = file == null ? null : new RandomAccessFile(file, "rw").getChannel();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void addRow(double[] row) {
+            if (rows % chunkRows == 0) {
+                current = newChunk(chunks.size());
+                chunks.add(current);
+            }
+            current.put((rows & (chunkRows - 1)) * cols, row, 0, cols);
+            rows++;
+        }
+
+        private DoubleBuffer newChunk(int index) {
+            long bytes = (long) chunkRows * cols * 8;
+            try {
+                ByteBuffer buffer = channel == null
+                    ? ByteBuffer.allocateDirect((int) bytes)
+                    : channel.map(FileChannel.MapMode.READ_WRITE, index * bytes, bytes);
+                return buffer.order(ByteOrder.nativeOrder()).asDoubleBuffer();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public FeatureMatrix build() {
+            if (channel != null) {
+                try {
+                    channel.close(); // Mappings stay valid after the channel is closed
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return new OffHeapFeatureMatrix(chunks.toArray(new DoubleBuffer[0]), cols, chunkShift, rows, null);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs independent tasks concurrently while keeping the console readable
+ *
+ * Each task's System.out output is buffered per thread and printed as one
+ * block, in task order, as soon as that task and all tasks before it have
+ * finished. Failures do not stop the other tasks; they are reported together
+ * once every task is done.
+ */
+public class OrderedConsole {
+    private static final ThreadLocal<ByteArrayOutputStream> BUFFER = new ThreadLocal<>();
+
+    private OrderedConsole() {
+    }
+
+    /**
+     * Run the tasks on up to {@code threads} threads
+     * @param names Task names (used in error messages)
+     * @return Task results, in task order
+     * @throws IOException if any task failed (each failure is attached as suppressed)
+     */
+    public static <T> List<T> runAll(List<String> names, List<Callable<T>> tasks, int threads) throws IOException {
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(new RoutingStream(console), true));
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, tasks.size())));
+
+        List<T> results = new ArrayList<>();
+        List<Throwable> failures = new ArrayList<>();
+        try {
+            List<Future<TaskOutput<T>>> futures = new ArrayList<>();
+            for (Callable<T> task : tasks) {
+                futures.add(executor.submit(() -> runCaptured(task)));
+            }
+
+            for (int i = 0; i < futures.size(); i++) {
+                TaskOutput<T> output = join(futures.get(i));
+                console.write(output.text, 0, output.text.length);
+                if (output.error != null) {
+                    console.println("✗ " + names.get(i) + " failed: " + output.error.getMessage());
+                    failures.add(output.error);
+                }
+                console.flush();
+                results.add(output.result);
+            }
+        } finally {
+            executor.shutdown();
+            System.setOut(console);
+        }
+
+        if (!failures.isEmpty()) {
+            IOException combined = new IOException(failures.size() + " of " + tasks.size() + " tasks failed");
+            for (Throwable failure : failures) {
+                combined.addSuppressed(failure);
+            }
+            throw combined;
+        }
+        return results;
+    }
+
+    private static <T> TaskOutput<T> runCaptured(Callable<T> task) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        BUFFER.set(buffer);
+        TaskOutput<T> output = new TaskOutput<>();
+        try {
+            output.result = task.call();
+        } catch (Throwable e) {
+            output.error = e;
+        } finally {
+            System.out.flush();
+            BUFFER.remove();
+        }
+        output.text = buffer.toByteArray();
+        return output;
+    }
+
+    private static <T> TaskOutput<T> join(Future<TaskOutput<T>> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for tasks", e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private static class TaskOutput<T> {
+        T result;
+        Throwable error;
+        byte[] text;
+    }
+
+    /**
+     * Sends bytes to the calling thread's buffer, or to the console if it has none
+     */
+    private static class RoutingStream extends OutputStream {
+        private final OutputStream console;
+
+        RoutingStream(OutputStream console) {
+            this.console = console;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            ByteArrayOutputStream buffer = BUFFER.get();
+            if (buffer != null) {
+                buffer.write(b);
+            } else {
+                console.write(b);
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            ByteArrayOutputStream buffer = BUFFER.get();
+            if (buffer != null) {
+                buffer.write(b, off, len);
+            } else {
+                console.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (BUFFER.get() == null) {
+                console.flush();
+            }
+        }
+    }
+}
@@ -0,0 +1,228 @@
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.stream.IntStream;
+
+/**
+ * Precomputed predictions for the target month, served from a memory-mapped file
+ *
+ * For a fixed month every prediction is deterministic given the models, so they
+ * are computed once after training (materialize) and stored sorted by
+ * Account_Key. A lookup is a binary search over the mapped key column plus
+ * two reads per target - no dataset, feature lookup or model math.
+ *
+ * File layout (big-endian):
+ *   int magic, int version, long fingerprint, int year, int month,
+ *   int targets, int rows, targets x UTF name,
+ *   rows x int Account_Key (sorted),
+ *   rows x targets x {double prediction, double previous}   (NaN = no row)
+ */
+public class PredictionTable {
+    private static final int MAGIC = 0x50544231; // "PTB1"
+    private static final int VERSION = 1;
+
+    private final long fingerprint;
+    private final int year;
+    private final int month;
+    private final String[] targets;
+    private final int rows;
+    private final IntBuffer keys;
+    private final DoubleBuffer values;
+
+    private PredictionTable(long fingerprint, int year, int month, String[] targets,
+                            int rows, IntBuffer keys, DoubleBuffer values) {
+        this.fingerprint = fingerprint;
+        this.year = year;
+        this.month = month;
+        this.targets = targets;
+        this.rows = rows;
+        this.keys = keys;
+        this.values = values;
+    }
+
+    /**
+     * Score every future row of the given month and write the table
+     * @param fingerprint Identifies the models, data and scaler the table was built from
+     * @param outputs Converts a model output of target t to output units
+     * @return number of accounts written
+     */
+    public static int materialize(String filename, long fingerprint, LinearRegression[] models,
+                                  DataLoader.Dataset[] datasets, int year, int month,
+                                  HorizonForecaster.OutputTransform outputs) throws IOException {
+        int numTargets = datasets.length;
+        int prevYear = month == 1 ? year - 1 : year;
+        int prevMonth = month == 1 ? 12 : month - 1;
+
+        // Future rows of the target month, per target: Account_Key -> row in the full dataset
+        TreeSet<Integer> accountSet = new TreeSet<>();
+        List<Map<Integer, Integer>> rowOf = new ArrayList<>();
+        for (int t = 0; t < numTargets; t++) {
+            DataLoader.Dataset future = DataLoader.getFutureData(datasets[t]);
+            rowOf.add(new HashMap<>());
+            for (int i = 0; i < future.accountKeys.length; i++) {
+                if (future.years[i] == year && future.months[i] == month) {
+                    int key = future.accountKeys[i];
+                    rowOf.get(t).put(key, datasets[t].indexOf(key, year, month));
+                    accountSet.add(key);
+                }
+            }
+        }
+        int[] accounts = accountSet.stream().mapToInt(Integer::intValue).toArray();
+
+        double[] table = new double[accounts.length * numTargets * 2];
+        IntStream.range(0, accounts.length).parallel().forEach(a -> {
+            int key = accounts[a];
+            for (int t = 0; t < numTargets; t++) {
+                int pos = (a * numTargets + t) * 2;
+                Integer idx = rowOf.get(t).get(key);
+                if (idx == null || idx < 0) {
+                    table[pos] = Double.NaN;
+                    table[pos + 1] = Double.NaN;
+                    continue;
+                }
+                DataLoader.Dataset dataset = datasets[t];
+                table[pos] = outputs.apply(t, models[t].predictSingle(dataset.matrix.getRow(idx)));
+                int prev = dataset.indexOf(key, prevYear, prevMonth);
+                table[pos + 1] = outputs.apply(t, prev >= 0 && dataset.y[prev] != null ? dataset.y[prev] : 0.0);
+            }
+        });
+
+        // Written beside the table and moved into place: serving processes keep
+        // the old file mapped, and a crash never leaves a partial table
+        File target = new File(filename).getAbsoluteFile();
+        File tmp = File.createTempFile(target.getName() + ".", ".tmp", target.getParentFile());
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(fingerprint);
+            out.writeInt(year);
+            out.writeInt(month);
+            out.writeInt(numTargets);
+            out.writeInt(accounts.length);
+            for (DataLoader.Dataset dataset : datasets) {
+                out.writeUTF(dataset.targetCol);
+            }
+            for (int key : accounts) {
+                out.writeInt(key);
+            }
+            for (double value : table) {
+                out.writeDouble(value);
+            }
+        } catch (IOException e) {
+            tmp.delete();
+            throw e;
+        }
+        Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return accounts.length;
+    }
+
+    /**
+     * Map a table file
+     */
+    public static PredictionTable open(String filename) throws IOException {
+        long headerBytes;
+        long fingerprint;
+        int year, month, numTargets, rows;
+        String[] targets;
+        try (DataInputStream in = new DataInputStream(new FileInputStream(filename))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a prediction table: " + filename);
+            }
+            fingerprint = in.readLong();
+            year = in.readInt();
+            month = in.readInt();
+            numTargets = in.readInt();
+            rows = in.readInt();
+            targets = new String[numTargets];
+            headerBytes = 32;
+            for (int t = 0; t < numTargets; t++) {
+                targets[t] = in.readUTF();
+                headerBytes += 2 + targets[t].getBytes(java.nio.charset.StandardCharsets.UTF_8).length;
+            }
+        }
+
+        long keyBytes = (long) rows * 4;
+        long valueBytes = (long) rows * numTargets * 2 * 8;
+        try (RandomAccessFile file = new RandomAccessFile(new File(filename), "r");
+             FileChannel channel = file.getChannel()) {
+            if (channel.size() != headerBytes + keyBytes + valueBytes) {
+                throw new IOException("Truncated prediction table: " + filename);
+            }
+            MappedByteBuffer keyRegion = channel.map(FileChannel.MapMode.READ_ONLY, headerBytes, keyBytes);
+            MappedByteBuffer valueRegion = channel.map(FileChannel.MapMode.READ_ONLY, headerBytes + keyBytes, valueBytes);
+            return new PredictionTable(fingerprint, year, month, targets, rows,
+                                       keyRegion.asIntBuffer(), valueRegion.asDoubleBuffer());
+        }
+    }
+
+    /**
+     * Row of an account (binary search), or -1 if it has no prediction
+     */
+    public int find(int accountKey) {
+        int low = 0;
+        int high = rows - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int key = keys.get(mid);
+            if (key < accountKey) {
+                low = mid + 1;
+            } else if (key > accountKey) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Prediction of target t (NaN if the account has no row for that target)
+     */
+    public double prediction(int row, int t) {
+        return values.get((row * targets.length + t) * 2);
+    }
+
+    /**
+     * Previous-month value of target t
+     */
+    public double previous(int row, int t) {
+        return values.get((row * targets.length + t) * 2 + 1);
+    }
+
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    public int getYear() {
+        return year;
+    }
+
+    public int getMonth() {
+        return month;
+    }
+
+    public String[] getTargets() {
+        return targets;
+    }
+
+    public int size() {
+        return rows;
+    }
+}
@@ -0,0 +1,144 @@
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Streaming quantile sketch (KLL)
+ * Keeps O(k log(n/k)) values; rank error is about 1.7 / k (≈ 0.9% for k = 200).
+ * Sketches built on separate chunks can be merged.
+ */
+public class QuantileSketch implements Serializable {
+    private static final long serialVersionUID = 1L; // Serialized as part of StreamingStats
+    private static final int DEFAULT_K = 200;
+
+    private final int k;
+    private final List<double[]> levels = new ArrayList<>(); // levels.get(h): values with weight 2^h
+    private final List<Integer> sizes = new ArrayList<>();
+    private long count = 0;
+    private final Random random = new Random(42); // Fixed seed: same input gives the same sketch
+
+    public QuantileSketch() {
+        this(DEFAULT_K);
+    }
+
+    public QuantileSketch(int k) {
+        this.k = k;
+        addLevel();
+    }
+
+    private void addLevel() {
+        levels.add(new double[8]);
+        sizes.add(0);
+    }
+
+    private int capacity(int level) {
+        int depth = levels.size() - 1 - level;
+        return Math.max(2, (int) Math.ceil(k * Math.pow(2.0 / 3.0, depth)));
+    }
+
+    public void add(double value) {
+        append(0, value);
+        count++;
+        compress();
+    }
+
+    private void append(int level, double value) {
+        double[] buffer = levels.get(level);
+        int size = sizes.get(level);
+        if (size == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            levels.set(level, buffer);
+        }
+        buffer[size] = value;
+        sizes.set(level, size + 1);
+    }
+
+    /**
+     * Compact every level that is over capacity: sort it and promote every other value
+     */
+    private void compress() {
+        for (int h = 0; h < levels.size(); h++) {
+            int size = sizes.get(h);
+            if (size < capacity(h)) continue;
+
+            if (h + 1 == levels.size()) {
+                addLevel();
+            }
+            double[] buffer = levels.get(h);
+            Arrays.sort(buffer, 0, size);
+            int offset = random.nextBoolean() ? 1 : 0;
+            int end = size - (size % 2);  // an odd leftover stays on this level
+            for (int i = offset; i < end; i += 2) {
+                append(h + 1, buffer[i]);
+            }
+            if (size % 2 == 1) {
+                buffer[0] = buffer[size - 1];
+                sizes.set(h, 1);
+            } else {
+                sizes.set(h, 0);
+            }
+        }
+    }
+
+    /**
+     * Merge another sketch into this one
+     */
+    public void merge(QuantileSketch other) {
+        while (levels.size() < other.levels.size()) {
+            addLevel();
+        }
+        for (int h = 0; h < other.levels.size(); h++) {
+            double[] buffer = other.levels.get(h);
+            int size = other.sizes.get(h);
+            for (int i = 0; i < size; i++) {
+                append(h, buffer[i]);
+            }
+        }
+        count += other.count;
+        compress();
+    }
+
+    /**
+     * Approximate q-quantile (q in [0, 1]), NaN if empty
+     */
+    public double quantile(double q) {
+        int total = 0;
+        for (int size : sizes) total += size;
+        if (total == 0) return Double.NaN;
+
+        double[] values = new double[total];
+        long[] weights = new long[total];
+        int pos = 0;
+        for (int h = 0; h < levels.size(); h++) {
+            double[] buffer = levels.get(h);
+            for (int i = 0; i < sizes.get(h); i++) {
+                values[pos] = buffer[i];
+                weights[pos] = 1L << h;
+                pos++;
+            }
+        }
+
+        // Sort values together with their weights
+        Integer[] order = new Integer[total];
+        for (int i = 0; i < total; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> Double.compare(values[a], values[b]));
+
+        long totalWeight = 0;
+        for (long w : weights) totalWeight += w;
+        double target = q * totalWeight;
+        long cumulative = 0;
+        for (int idx : order) {
+            cumulative += weights[idx];
+            if (cumulative >= target) {
+                return values[idx];
+            }
+        }
+        return values[order[total - 1]];
+    }
+
+    public long getCount() {
+        return count;
+    }
+}
@@ -0,0 +1,487 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Append-only on-disk store of one time series dataset
+ *
+ * Rows (Account_Key, Year, Month + every other CSV column as a double, NaN =
+ * missing) live in immutable segment files; each ingested file adds segments
+ * and never rewrites old ones. A row whose (Account_Key, Year, Month) already
+ * exists supersedes the earlier version (e.g. a future row whose real target
+ * has arrived) but keeps its position, so the dataset order stays that of
+ * first appearance.
+ *
+ * The manifest holds the column names, the segment list and first-seen column
+ * statistics (each cell counted once, with the value it had when it first
+ * became known; later corrections are not reflected). The row index is rebuilt on open from the segments' key columns
+ * and updated in place by each ingest.
+ *
+ * Segment layout (big-endian):
+ *   int magic, int rows, int cols,
+ *   rows x int Account_Key, rows x int Year, rows x int Month,
+ *   rows x cols double values (row-major)
+ */
+public class SegmentStore {
+    private static final int MAGIC = 0x53454731; // "SEG1"
+    private static final int SEGMENT_ROWS = 1 << 16;
+    private static final String MANIFEST = "manifest";
+
+    private final File dir;
+    private final Manifest manifest;
+
+    // Logical table: one position per (Account_Key, Year, Month), latest version wins
+    private int rows;
+    private int[] keys = new int[1024];
+    private int[] years = new int[1024];
+    private int[] months = new int[1024];
+    private long[] locations = new long[1024]; // segment << 32 | row in segment
+    private final Map<Long, Integer> index = new HashMap<>();
+    private final Map<Integer, Segment> mapped = new HashMap<>(); // Segments are immutable once written
+
+    /**
+     * Result of one ingest
+     */
+    public static class IngestResult {
+        public int appended;  // New (Account_Key, Year, Month) rows
+        public int upserted;  // Existing rows replaced (e.g. future row with its real target)
+        public int filled;    // Of those, rows whose missing values were filled in
+        public int invalid;   // Lines that could not be parsed
+    }
+
+    private static class Manifest implements Serializable {
+        private static final long serialVersionUID = 1L; // Read back from the manifest file on open
+
+        String[] columns;                          // Value columns (CSV order, without the identifiers)
+        List<String> segments = new ArrayList<>();
+        StreamingStats[] stats;                    // Per value column, first-seen values
+    }
+
+    private SegmentStore(File dir, Manifest manifest) {
+        this.dir = dir;
+        this.manifest = manifest;
+    }
+
+    /**
+     * Open a store, creating it from a full CSV the first time
+     * @param csvFile Imported when the store does not exist yet
+     */
+    public static SegmentStore openOrImport(File dir, String csvFile) throws IOException {
+        if (new File(dir, MANIFEST).exists()) {
+            return open(dir);
+        }
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create store directory: " + dir);
+        }
+        Manifest manifest = new Manifest();
+        try (BufferedReader br = new BufferedReader(new FileReader(csvFile))) {
+            String header = br.readLine();
+            if (header == null) {
+                throw new IOException("Empty file: " + csvFile);
+            }
+            List<String> columns = new ArrayList<>();
+            for (String col : header.split(",")) {
+                col = col.trim();
+                if (!isIdentifier(col)) {
+                    columns.add(col);
+                }
+            }
+            manifest.columns = columns.toArray(new String[0]);
+        }
+        manifest.stats = new StreamingStats[manifest.columns.length];
+        for (int c = 0; c < manifest.stats.length; c++) {
+            manifest.stats[c] = new StreamingStats();
+        }
+        SegmentStore store = new SegmentStore(dir, manifest);
+        store.ingest(csvFile);
+        return store;
+    }
+
+    /**
+     * Open an existing store and rebuild its row index
+     */
+    public static SegmentStore open(File dir) throws IOException {
+        Manifest manifest;
+        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(new File(dir, MANIFEST)))) {
+            manifest = (Manifest) ois.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Invalid store manifest: " + e.getMessage(), e);
+        }
+        SegmentStore store = new SegmentStore(dir, manifest);
+        // Replaying the key columns in segment order rebuilds positions and latest versions
+        for (int s = 0; s < manifest.segments.size(); s++) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    new FileInputStream(new File(dir, manifest.segments.get(s))), 1 << 16))) {
+                int count = readHeader(in, manifest.columns.length, manifest.segments.get(s));
+                int[] segKeys = readInts(in, count);
+                int[] segYears = readInts(in, count);
+                int[] segMonths = readInts(in, count);
+                for (int r = 0; r < count; r++) {
+                    store.put(segKeys[r], segYears[r], segMonths[r], location(s, r));
+                }
+            }
+        }
+        return store;
+    }
+
+    /**
+     * Parse a CSV with the store's columns (any order, extra columns ignored)
+     * and append it as new segments. Manifest and statistics are updated
+     * only after the segments are on disk, so an interrupted ingest leaves
+     * the store unchanged.
+     */
+    public IngestResult ingest(String csvFile) throws IOException {
+        IngestResult result = new IngestResult();
+        int cols = manifest.columns.length;
+        List<String> newSegments = new ArrayList<>();
+        StreamingStats[] added = new StreamingStats[cols];
+        for (int c = 0; c < cols; c++) {
+            added[c] = new StreamingStats();
+        }
+
+        try (BufferedReader br = new BufferedReader(new FileReader(csvFile))) {
+            String header = br.readLine();
+            if (header == null) {
+                throw new IOException("Empty file: " + csvFile);
+            }
+            Map<String, Integer> colIndexMap = new HashMap<>();
+            String[] headerCols = header.split(",");
+            for (int i = 0; i < headerCols.length; i++) {
+                colIndexMap.put(headerCols[i].trim(), i);
+            }
+            int keyCol = requireColumn(colIndexMap, "Account_Key", csvFile);
+            int yearCol = requireColumn(colIndexMap, "Year", csvFile);
+            int monthCol = requireColumn(colIndexMap, "Month", csvFile);
+            int[] valueCols = new int[cols];
+            for (int c = 0; c < cols; c++) {
+                valueCols[c] = requireColumn(colIndexMap, manifest.columns[c], csvFile);
+            }
+
+            // Rows of the segment being built; flushed every SEGMENT_ROWS rows
+            int[] segKeys = new int[Math.min(SEGMENT_ROWS, 4096)];
+            int[] segYears = new int[segKeys.length];
+            int[] segMonths = new int[segKeys.length];
+            double[] segValues = new double[segKeys.length * cols];
+            int count = 0;
+            int lineCount = 0;
+            String line;
+            while ((line = br.readLine()) != null) {
+                lineCount++;
+                String[] values = line.split(",");
+                if (count == segKeys.length) {
+                    if (count == SEGMENT_ROWS) {
+                        newSegments.add(writeSegment(manifest.segments.size() + newSegments.size(), segKeys, segYears, segMonths, segValues, count));
+                        count = 0;
+                    } else {
+                        segKeys = Arrays.copyOf(segKeys, Math.min(SEGMENT_ROWS, count * 2));
+                        segYears = Arrays.copyOf(segYears, segKeys.length);
+                        segMonths = Arrays.copyOf(segMonths, segKeys.length);
+                        segValues = Arrays.copyOf(segValues, segKeys.length * cols);
+                    }
+                }
+                try {
+                    int key = Integer.parseInt(values[keyCol].trim());
+                    int year = Integer.parseInt(values[yearCol].trim());
+                    int month = Integer.parseInt(values[monthCol].trim());
+                    for (int c = 0; c < cols; c++) {
+                        segValues[count * cols + c] = parseValue(values[valueCols[c]]);
+                    }
+                    segKeys[count] = key;
+                    segYears[count] = year;
+                    segMonths[count] = month;
+                    count++;
+                } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                    System.err.println("Error parsing line " + lineCount + " of " + csvFile);
+                    System.err.println("Error: " + e.getMessage());
+                    result.invalid++;
+                }
+            }
+            if (count > 0) {
+                newSegments.add(writeSegment(manifest.segments.size() + newSegments.size(), segKeys, segYears, segMonths, segValues, count));
+            }
+        }
+
+        // Index and statistics: a cell counts once, when its value first becomes known
+        double[] previous = new double[cols];
+        for (String segment : newSegments) {
+            int s = manifest.segments.size();
+            manifest.segments.add(segment);
+            Segment seg = segment(s);
+            for (int r = 0; r < seg.rows; r++) {
+                Integer pos = index.get(rowKey(seg.keys[r], seg.years[r], seg.months[r]));
+                boolean filledCell = false;
+                if (pos != null) {
+                    Segment old = segment((int) (locations[pos] >>> 32));
+                    old.values.get((int) locations[pos] * cols, previous);
+                    result.upserted++;
+                } else {
+                    Arrays.fill(previous, Double.NaN);
+                    result.appended++;
+                }
+                for (int c = 0; c < cols; c++) {
+                    double value = seg.values.get(r * cols + c);
+                    if (Double.isNaN(previous[c]) && !Double.isNaN(value)) {
+                        added[c].add(value);
+                        filledCell = true;
+                    }
+                }
+                if (pos != null && filledCell) {
+                    result.filled++;
+                }
+                put(seg.keys[r], seg.years[r], seg.months[r], location(s, r));
+            }
+        }
+        for (int c = 0; c < cols; c++) {
+            manifest.stats[c].merge(added[c]);
+        }
+        writeManifest();
+        return result;
+    }
+
+    /**
+     * Build the dataset of one target, like DataLoader.loadFromCSV on the merged
+     * rows: features are every column except Account_Key, Year, Month, Quarter and
+     * the target; rows with a missing feature are skipped, a missing target
+     * makes a future row.
+     */
+    public DataLoader.Dataset toDataset(String targetCol, DataLoader.Storage storage) throws IOException {
+        int cols = manifest.columns.length;
+        int targetIdx = Arrays.asList(manifest.columns).indexOf(targetCol);
+        if (targetIdx < 0) {
+            throw new IOException("Column not in store: " + targetCol);
+        }
+        List<Integer> featureIdx = new ArrayList<>();
+        for (int c = 0; c < cols; c++) {
+            if (c != targetIdx && !manifest.columns[c].equals("Quarter")) {
+                featureIdx.add(c);
+            }
+        }
+        String[] featureNames = new String[featureIdx.size()];
+        for (int i = 0; i < featureNames.length; i++) {
+            featureNames[i] = manifest.columns[featureIdx.get(i)];
+        }
+
+        FeatureMatrix.Builder builder = DataLoader.newBuilder(storage, featureNames.length, dir.getName());
+        int[] outKeys = new int[rows];
+        int[] outYears = new int[rows];
+        int[] outMonths = new int[rows];
+        Double[] y = new Double[rows];
+        double[] features = new double[featureNames.length];
+        StreamingStats targetStats = new StreamingStats(); // Current values, not the first-seen ones
+        int out = 0;
+        int skipped = 0;
+        for (int pos = 0; pos < rows; pos++) {
+            Segment seg = segment((int) (locations[pos] >>> 32));
+            int base = (int) locations[pos] * cols;
+            boolean complete = true;
+            for (int i = 0; i < features.length; i++) {
+                features[i] = seg.values.get(base + featureIdx.get(i));
+                complete &= !Double.isNaN(features[i]);
+            }
+            if (!complete) {
+                skipped++;
+                continue;
+            }
+            double target = seg.values.get(base + targetIdx);
+            builder.addRow(features);
+            outKeys[out] = keys[pos];
+            outYears[out] = years[pos];
+            outMonths[out] = months[pos];
+            y[out] = Double.isNaN(target) ? null : target;
+            if (y[out] != null) {
+                targetStats.add(target);
+            }
+            out++;
+        }
+        if (skipped > 0) {
+            System.err.println("Skipped " + skipped + " rows with missing features in " + dir);
+        }
+
+        DataLoader.Dataset dataset = new DataLoader.Dataset(
+            Arrays.copyOf(outKeys, out), Arrays.copyOf(outYears, out), Arrays.copyOf(outMonths, out),
+            builder.build(), Arrays.copyOf(y, out), targetCol);
+        dataset.featureNames = featureNames;
+        dataset.targetStats = targetStats;
+        return dataset;
+    }
+
+    /**
+     * First-seen statistics of a column, kept up to date by ingest without
+     * rescanning: an upserted value that replaces a known one is not counted
+     * again. For exact statistics of the current rows use toDataset.
+     */
+    public StreamingStats getStats(String column) {
+        int c = Arrays.asList(manifest.columns).indexOf(column);
+        return c >= 0 ? manifest.stats[c] : null;
+    }
+
+    public int getRowCount() {
+        return rows;
+    }
+
+    public int getSegmentCount() {
+        return manifest.segments.size();
+    }
+
+    /**
+     * Fingerprint of a store directory; changes whenever an ingest completes
+     */
+    public static long fingerprint(File dir) {
+        return DataLoader.fingerprint(new File(dir, MANIFEST).getPath());
+    }
+
+    // ============ INTERNALS ============
+
+    private void put(int key, int year, int month, long location) {
+        long rowKey = rowKey(key, year, month);
+        Integer pos = index.get(rowKey);
+        if (pos != null) {
+            locations[pos] = location;
+            return;
+        }
+        if (rows == keys.length) {
+            int capacity = rows * 2;
+            keys = Arrays.copyOf(keys, capacity);
+            years = Arrays.copyOf(years, capacity);
+            months = Arrays.copyOf(months, capacity);
+            locations = Arrays.copyOf(locations, capacity);
+        }
+        keys[rows] = key;
+        years[rows] = year;
+        months[rows] = month;
+        locations[rows] = location;
+        index.put(rowKey, rows);
+        rows++;
+    }
+
+    private Segment segment(int s) throws IOException {
+        Segment seg = mapped.get(s);
+        if (seg == null) {
+            seg = Segment.map(new File(dir, manifest.segments.get(s)), manifest.columns.length);
+            mapped.put(s, seg);
+        }
+        return seg;
+    }
+
+    private String writeSegment(int number, int[] segKeys, int[] segYears, int[] segMonths,
+                                double[] segValues, int count) throws IOException {
+        // A leftover file of an interrupted ingest has the same name and is overwritten
+        String name = String.format("segment-%06d.seg", number);
+        File tmp = new File(dir, name + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(count);
+            out.writeInt(manifest.columns.length);
+            for (int r = 0; r < count; r++) out.writeInt(segKeys[r]);
+            for (int r = 0; r < count; r++) out.writeInt(segYears[r]);
+            for (int r = 0; r < count; r++) out.writeInt(segMonths[r]);
+            for (int i = 0; i < count * manifest.columns.length; i++) out.writeDouble(segValues[i]);
+        }
+        Files.move(tmp.toPath(), new File(dir, name).toPath(), StandardCopyOption.REPLACE_EXISTING);
+        return name;
+    }
+
+    private void writeManifest() throws IOException {
+        File tmp = new File(dir, MANIFEST + ".tmp");
+        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(tmp))) {
+            oos.writeObject(manifest);
+        }
+        Files.move(tmp.toPath(), new File(dir, MANIFEST).toPath(),
+                   StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static int readHeader(DataInputStream in, int cols, String name) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a segment file: " + name);
+        }
+        int count = in.readInt();
+        if (in.readInt() != cols) {
+            throw new IOException("Column count mismatch in segment " + name);
+        }
+        return count;
+    }
+
+    private static int[] readInts(DataInputStream in, int count) throws IOException {
+        int[] values = new int[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = in.readInt();
+        }
+        return values;
+    }
+
+    private static double parseValue(String value) {
+        value = value.trim();
+        return value.isEmpty() || value.equalsIgnoreCase("nan") ? Double.NaN : Double.parseDouble(value);
+    }
+
+    private static int requireColumn(Map<String, Integer> colIndexMap, String column, String file)
+            throws IOException {
+        Integer idx = colIndexMap.get(column);
+        if (idx == null) {
+            throw new IOException("Column " + column + " missing in " + file);
+        }
+        return idx;
+    }
+
+    private static boolean isIdentifier(String column) {
+        return column.equals("Account_Key") || column.equals("Year") || column.equals("Month");
+    }
+
+    private static long location(int segment, int row) {
+        return ((long) segment << 32) | row;
+    }
+
+    private static long rowKey(int accountKey, int year, int month) {
+        return ((long) accountKey << 32) | ((long) year * 16 + month);
+    }
+
+    /**
+     * One segment file: key columns on heap, values memory-mapped
+     */
+    private static class Segment {
+        int rows;
+        int[] keys;
+        int[] years;
+        int[] months;
+        DoubleBuffer values;
+
+        static Segment map(File file, int cols) throws IOException {
+            Segment seg = new Segment();
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    new FileInputStream(file), 1 << 16))) {
+                seg.rows = readHeader(in, cols, file.getName());
+                seg.keys = readInts(in, seg.rows);
+                seg.years = readInts(in, seg.rows);
+                seg.months = readInts(in, seg.rows);
+            }
+            long offset = 12 + (long) seg.rows * 12;
+            try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+                 FileChannel channel = raf.getChannel()) {
+                seg.values = channel.map(FileChannel.MapMode.READ_ONLY, offset, (long) seg.rows * cols * 8)
+                                    .asDoubleBuffer();
+            }
+            return seg;
+        }
+    }
+}
@@ -0,0 +1,235 @@
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Per-segment ridge models with a global fallback
+ *
+ * Rows are grouped by a segment key built from a few feature columns
+ * (e.g. Account_Type_Code, Is_Credit_Card, Age in bands of 10 years).
+ * One parallel pass accumulates a GramMatrix per segment; every segment
+ * with enough rows is then solved concurrently. Segments that are too
+ * small (or unseen at training time) use the global model.
+ *
+ * predictSingle / predict route each row to its segment model, so a
+ * SegmentedModel can be used anywhere a LinearRegression is expected.
+ */
+public class SegmentedModel extends LinearRegression {
+    private static final int CHUNK_SIZE = 8192;
+
+    private final int[] segmentCols;      // Feature columns forming the key
+    private final double[] bandWidths;    // Band width per column (1 = exact value)
+    private final String[] segmentNames;  // Column names (for display and persistence)
+    private int minRows;                  // Smaller segments fall back to the global model
+    private Map<Long, double[]> segmentThetas = new HashMap<>();
+
+    public SegmentedModel(String modelName, String[] segmentNames, int[] segmentCols,
+                          double[] bandWidths, int minRows) {
+        super(modelName);
+        this.segmentNames = segmentNames;
+        this.segmentCols = segmentCols;
+        this.bandWidths = bandWidths;
+        this.minRows = minRows;
+    }
+
+    /**
+     * Build from a spec like "Is_Credit_Card,Age:10,Location_Score:2"
+     * (column name, optional band width after ':')
+     * @param minRows Minimum rows per segment, or 0 for 10 × (features + 1)
+     */
+    public static SegmentedModel fromSpec(String modelName, String spec, String[] featureNames, int minRows) {
+        String[] parts = spec.split(",");
+        String[] names = new String[parts.length];
+        int[] cols = new int[parts.length];
+        double[] widths = new double[parts.length];
+
+        for (int i = 0; i < parts.length; i++) {
+            String[] nameAndWidth = parts[i].trim().split(":");
+            names[i] = nameAndWidth[0];
+            widths[i] = nameAndWidth.length > 1 ? Double.parseDouble(nameAndWidth[1]) : 1.0;
+            cols[i] = -1;
+            for (int j = 0; j < featureNames.length; j++) {
+                if (featureNames[j].equals(names[i])) cols[i] = j;
+            }
+            if (cols[i] < 0) {
+                throw new IllegalArgumentException("Unknown segment column: " + names[i]);
+            }
+        }
+
+        int rows = minRows > 0 ? minRows : 10 * (featureNames.length + 1);
+        return new SegmentedModel(modelName, names, cols, widths, rows);
+    }
+
+    /**
+     * Segment key of one row
+     */
+    public long segmentKey(FeatureMatrix X, int row) {
+        long key = 0x9E3779B97F4A7C15L;
+        for (int c = 0; c < segmentCols.length; c++) {
+            key = mix(key, band(X.get(row, segmentCols[c]), bandWidths[c]));
+        }
+        return key;
+    }
+
+    /**
+     * Segment key of a single feature vector
+     */
+    public long segmentKey(double[] features) {
+        long key = 0x9E3779B97F4A7C15L;
+        for (int c = 0; c < segmentCols.length; c++) {
+            key = mix(key, band(features[segmentCols[c]], bandWidths[c]));
+        }
+        return key;
+    }
+
+    private static long band(double value, double width) {
+        return (long) Math.floor(value / width);
+    }
+
+    // 64-bit mixing (splitmix64 finalizer) of the running key with one band value
+    private static long mix(long key, long value) {
+        long z = key ^ (value + 0x9E3779B97F4A7C15L + (key << 6) + (key >>> 2));
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    @Override
+    public void train(double[][] X, double[] y) {
+        train(new DenseFeatureMatrix(X), y);
+    }
+
+    /**
+     * Group rows by segment and accumulate per-segment Gram matrices in parallel,
+     * then solve the global model and all segment models concurrently
+     */
+    @Override
+    public void train(FeatureMatrix X, double[] y) {
+        int m = X.rows();
+        int n = X.cols();
+
+        // One pass: each chunk builds its own segment -> Gram map, then maps are merged
+        int chunks = (m + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        List<Map<Long, GramMatrix>> partials = IntStream.range(0, chunks).parallel()
+            .mapToObj(c -> {
+                Map<Long, GramMatrix> grams = new HashMap<>();
+                int[] cols = new int[n];
+                double[] values = new double[n];
+                int end = Math.min(m, (c + 1) * CHUNK_SIZE);
+                for (int i = c * CHUNK_SIZE; i < end; i++) {
+                    grams.computeIfAbsent(segmentKey(X, i), k -> new GramMatrix(n))
+                         .add(X, i, y[i], cols, values);
+                }
+                return grams;
+            })
+            .collect(Collectors.toList());
+
+        Map<Long, GramMatrix> segmentGrams = new HashMap<>();
+        GramMatrix global = new GramMatrix(n);
+        for (Map<Long, GramMatrix> partial : partials) {
+            for (Map.Entry<Long, GramMatrix> entry : partial.entrySet()) {
+                GramMatrix existing = segmentGrams.get(entry.getKey());
+                if (existing == null) {
+                    segmentGrams.put(entry.getKey(), entry.getValue());
+                } else {
+                    existing.merge(entry.getValue());
+                }
+                global.merge(entry.getValue());
+            }
+        }
+
+        // Global model (fallback)
+        fitGram(global);
+
+        // Segment models, solved concurrently
+        Map<Long, double[]> thetas = new ConcurrentHashMap<>();
+        segmentGrams.entrySet().parallelStream()
+            .filter(entry -> entry.getValue().getCount() >= minRows)
+            .forEach(entry -> {
+                LinearRegression segment = new LinearRegression(getModelName());
+                segment.setLambda(getLambda());
+                segment.fitGram(entry.getValue());
+                thetas.put(entry.getKey(), segment.getTheta());
+            });
+        this.segmentThetas = new HashMap<>(thetas);
+
+        long fallbackRows = 0;
+        for (GramMatrix gram : segmentGrams.values()) {
+            if (gram.getCount() < minRows) fallbackRows += gram.getCount();
+        }
+        System.out.printf("[%s] Segments by %s: %d found, %d trained, %d rows on global fallback (< %d rows)\n",
+                         getModelName(), String.join(", ", segmentNames), segmentGrams.size(),
+                         segmentThetas.size(), fallbackRows, minRows);
+        System.out.println("[" + getModelName() + "] Training completed with Ridge regularization!");
+    }
+
+    /**
+     * θ of the segment a feature vector belongs to (global θ if none)
+     */
+    public double[] thetaFor(double[] features) {
+        double[] theta = segmentThetas.get(segmentKey(features));
+        return theta != null ? theta : getTheta();
+    }
+
+    @Override
+    public double predictSingle(double[] features) {
+        double[] theta = thetaFor(features);
+        double prediction = theta[0];
+        for (int i = 0; i < features.length; i++) {
+            prediction += theta[i + 1] * features[i];
+        }
+        return prediction;
+    }
+
+    @Override
+    public double[] predict(FeatureMatrix X) {
+        double[] global = getTheta();
+        double[] predictions = new double[X.rows()];
+        for (int i = 0; i < predictions.length; i++) {
+            double[] theta = segmentThetas.getOrDefault(segmentKey(X, i), global);
+            predictions[i] = X.dotRow(i, theta);
+        }
+        return predictions;
+    }
+
+    public int getSegmentCount() {
+        return segmentThetas.size();
+    }
+
+    // ============ PERSISTENCE ============
+
+    /**
+     * Store the segment definition and models in model metadata
+     */
+    public void writeMetadata(Map<String, Object> metadata) {
+        metadata.put(ModelSerializer.META_SEGMENT_NAMES, segmentNames);
+        metadata.put(ModelSerializer.META_SEGMENT_COLUMNS, segmentCols);
+        metadata.put(ModelSerializer.META_SEGMENT_WIDTHS, bandWidths);
+        metadata.put(ModelSerializer.META_SEGMENT_MIN_ROWS, minRows);
+        metadata.put(ModelSerializer.META_SEGMENT_THETAS, new HashMap<>(segmentThetas));
+    }
+
+    /**
+     * Rebuild a segmented model from a loaded model file
+     * @return the segmented model, or the plain model if the file has no segments
+     */
+    @SuppressWarnings("unchecked")
+    public static LinearRegression fromSaved(ModelSerializer.SavedModel saved) {
+        Map<String, Object> metadata = saved.metadata;
+        if (!metadata.containsKey(ModelSerializer.META_SEGMENT_THETAS)) {
+            return saved.model;
+        }
+        SegmentedModel model = new SegmentedModel(
+            saved.model.getModelName(),
+            (String[]) metadata.get(ModelSerializer.META_SEGMENT_NAMES),
+            (int[]) metadata.get(ModelSerializer.META_SEGMENT_COLUMNS),
+            (double[]) metadata.get(ModelSerializer.META_SEGMENT_WIDTHS),
+            (Integer) metadata.get(ModelSerializer.META_SEGMENT_MIN_ROWS));
+        model.setTheta(saved.model.getTheta());
+        model.segmentThetas = (Map<Long, double[]>) metadata.get(ModelSerializer.META_SEGMENT_THETAS);
+        return model;
+    }
+}
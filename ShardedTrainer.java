@@ -0,0 +1,485 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Shard-and-merge training: worker processes accumulate partial normal
+ * equation statistics, a coordinator merges them and solves
+ *
+ * Rows are assigned to PARTITIONS fixed hash partitions of Account_Key, and
+ * a worker owns the partitions p with p % shards == shard. Each worker
+ * streams the CSV twice: a light pass counts the rows with a target, so
+ * every worker derives the same ordered train/validation split as
+ * DataLoader.splitTrainValTest; the second pass parses only its own rows.
+ * Train rows go to the Gram matrix of their cross-validation fold
+ * (contiguous blocks, as in CrossValidator) and validation rows to a
+ * separate one, after the same float rounding and feature expansion as the
+ * in-memory path. The merge always adds the partitions in order
+ * 0..PARTITIONS-1, so θ is bit-identical for any number of workers, and
+ * equal to in-memory training up to floating-point summation order.
+ *
+ * Partial file: int magic, then serialized target, CSV length, feature names,
+ * plan, shard, shards, target rows, per-partition fold and validation Gram
+ * matrices and target StreamingStats (null for partitions owned by other
+ * workers), invalid and unmatched line counts
+ */
+public class ShardedTrainer {
+    private static final int PARTITION_BITS = 6;
+    public static final int PARTITIONS = 1 << PARTITION_BITS;
+    private static final int MAGIC = 0x47524D32; // "GRM2"
+
+    private ShardedTrainer() {
+    }
+
+    /**
+     * Model settings every worker must share with the coordinator
+     */
+    public static class Plan {
+        public final double trainRatio;
+        public final double valRatio;
+        public final int folds;
+        public final String expansion; // FeatureExpansion spec ("" = none)
+        public final boolean float32;  // Features rounded like Storage.FLOAT32
+
+        public Plan(double trainRatio, double valRatio, int folds, String expansion, boolean float32) {
+            this.trainRatio = trainRatio;
+            this.valRatio = valRatio;
+            this.folds = folds;
+            this.expansion = expansion;
+            this.float32 = float32;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Plan)) return false;
+            Plan other = (Plan) o;
+            return trainRatio == other.trainRatio && valRatio == other.valRatio && folds == other.folds
+                && expansion.equals(other.expansion) && float32 == other.float32;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(trainRatio, valRatio, folds, expansion, float32);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("split %.0f/%.0f, %d folds, expand \"%s\"%s", trainRatio * 100, valRatio * 100,
+                                 folds, expansion, float32 ? ", float32" : "");
+        }
+    }
+
+    /**
+     * Statistics of the partitions owned by one worker
+     */
+    public static class Partial {
+        public String targetCol;
+        public long csvLength;       // Workers on other hosts must read the same file
+        public String[] featureNames;
+        public Plan plan;
+        public int shard;
+        public int shards;
+        public long targetRows;      // Rows with a target in the whole file
+        public GramMatrix[][] folds = new GramMatrix[PARTITIONS][];
+        public GramMatrix[] validation = new GramMatrix[PARTITIONS];
+        public StreamingStats[] targetStats = new StreamingStats[PARTITIONS];
+        public long invalidLines;
+        public long unmatchedLines;  // Counted as target rows, but DataLoader would skip them
+
+        public long trainRows() {
+            long rows = 0;
+            for (GramMatrix[] grams : folds) {
+                if (grams == null) continue;
+                for (GramMatrix gram : grams) {
+                    rows += gram.getCount();
+                }
+            }
+            return rows;
+        }
+    }
+
+    /**
+     * Merged statistics of every partition
+     */
+    public static class Merged {
+        public final GramMatrix[] folds;      // Train rows per cross-validation fold
+        public final GramMatrix train;        // Sum of the folds
+        public final GramMatrix validation;
+        public final StreamingStats targetStats;
+        public final String[] featureNames;   // Base features (before expansion)
+        public final Plan plan;
+
+        Merged(GramMatrix[] folds, GramMatrix train, GramMatrix validation, StreamingStats targetStats,
+               String[] featureNames, Plan plan) {
+            this.folds = folds;
+            this.train = train;
+            this.validation = validation;
+            this.targetStats = targetStats;
+            this.featureNames = featureNames;
+            this.plan = plan;
+        }
+    }
+
+    /**
+     * Partition of an account (Fibonacci hashing of the key)
+     */
+    public static int partition(int accountKey) {
+        return (accountKey * 0x9E3779B9) >>> (32 - PARTITION_BITS);
+    }
+
+    /**
+     * Column positions of a CSV, resolved once per pass
+     */
+    private static class Columns {
+        final String[] featureNames;
+        final int keyIdx, yearIdx, monthIdx, targetIdx;
+        final int[] featureIdx;
+        final int maxIdx;
+
+        Columns(String header, String targetCol, String filename) throws IOException {
+            String[] headerCols = header.split(",");
+            Map<String, Integer> colIndexMap = new HashMap<>();
+            for (int i = 0; i < headerCols.length; i++) {
+                colIndexMap.put(headerCols[i].trim(), i);
+            }
+            for (String required : new String[] {"Account_Key", "Year", "Month", targetCol}) {
+                if (!colIndexMap.containsKey(required)) {
+                    throw new IOException(required + " not found in " + filename);
+                }
+            }
+            List<String> featureCols = DataLoader.featureColumns(headerCols, targetCol);
+            featureNames = featureCols.toArray(new String[0]);
+            keyIdx = colIndexMap.get("Account_Key");
+            yearIdx = colIndexMap.get("Year");
+            monthIdx = colIndexMap.get("Month");
+            targetIdx = colIndexMap.get(targetCol);
+            featureIdx = new int[featureCols.size()];
+            int max = Math.max(Math.max(keyIdx, yearIdx), Math.max(monthIdx, targetIdx));
+            for (int j = 0; j < featureIdx.length; j++) {
+                featureIdx[j] = colIndexMap.get(featureCols.get(j));
+                max = Math.max(max, featureIdx[j]);
+            }
+            maxIdx = max;
+        }
+
+        boolean isFutureRow(String[] values) {
+            return values.length > targetIdx
+                && (values[targetIdx].isEmpty() || values[targetIdx].equalsIgnoreCase("nan"));
+        }
+
+        /**
+         * Account_Key of a row that DataLoader keeps with a target, or null.
+         * Only identifiers and the presence of the target are checked; the
+         * owner of the row parses the numbers.
+         */
+        Integer targetRowKey(String[] values) {
+            if (values.length <= maxIdx) return null;
+            String targetStr = values[targetIdx];
+            if (targetStr.isEmpty() || targetStr.equalsIgnoreCase("nan")) return null;
+            try {
+                int accountKey = Integer.parseInt(values[keyIdx].trim());
+                Integer.parseInt(values[yearIdx].trim());
+                Integer.parseInt(values[monthIdx].trim());
+                return accountKey;
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Stream the CSV and accumulate the rows with a target that fall in the
+     * partitions of this shard
+     */
+    public static Partial accumulate(String filename, String targetCol, int shard, int shards, Plan plan)
+            throws IOException {
+        if (shards < 1 || shard < 0 || shard >= shards) {
+            throw new IllegalArgumentException("Invalid shard " + shard + " of " + shards);
+        }
+        Partial partial = new Partial();
+        partial.targetCol = targetCol;
+        partial.csvLength = new File(filename).length();
+        partial.plan = plan;
+        partial.shard = shard;
+        partial.shards = shards;
+
+        // Pass 1: rows with a target, in file order (the split is a prefix of them)
+        long targetRows = 0;
+        Columns columns;
+        try (BufferedReader br = new BufferedReader(new FileReader(filename), 1 << 16)) {
+            columns = new Columns(br.readLine(), targetCol, filename);
+            String line;
+            while ((line = br.readLine()) != null) {
+                if (columns.targetRowKey(line.split(",")) != null) targetRows++;
+            }
+        }
+        partial.targetRows = targetRows;
+        partial.featureNames = columns.featureNames;
+        long trainSize = (int) (targetRows * plan.trainRatio);
+        long valSize = (int) (targetRows * plan.valRatio);
+
+        int base = columns.featureIdx.length;
+        FeatureExpansion expansion = plan.expansion.isEmpty() ? null
+            : FeatureExpansion.fromSpec(plan.expansion, columns.featureNames);
+        int dim = base + (expansion != null ? expansion.size() : 0);
+        for (int p = 0; p < PARTITIONS; p++) {
+            if (p % shards == shard) {
+                partial.folds[p] = new GramMatrix[plan.folds];
+                for (int f = 0; f < plan.folds; f++) {
+                    partial.folds[p][f] = new GramMatrix(dim);
+                }
+                partial.validation[p] = new GramMatrix(dim);
+                partial.targetStats[p] = new StreamingStats();
+            }
+        }
+
+        // Pass 2: parse and accumulate the rows of this shard
+        try (BufferedReader br = new BufferedReader(new FileReader(filename), 1 << 16)) {
+            br.readLine();
+            double[] features = new double[dim];
+            long index = 0;  // Position among the rows with a target
+            int fold = 0;
+            String line;
+            while ((line = br.readLine()) != null) {
+                String[] values = line.split(",");
+                Integer accountKey = columns.targetRowKey(values);
+                if (accountKey == null) {
+                    if (!columns.isFutureRow(values) && values.length > columns.keyIdx
+                            && isOwnRow(values[columns.keyIdx], partial)) {
+                        partial.invalidLines++;
+                    }
+                    continue;
+                }
+                long position = index++;
+                if (position < trainSize) {
+                    while (fold + 1 < plan.folds && position >= CrossValidator.foldStart(fold + 1, plan.folds, (int) trainSize)) {
+                        fold++;
+                    }
+                }
+                int p = partition(accountKey);
+                if (partial.folds[p] == null) continue;
+
+                double target;
+                try {
+                    target = Double.parseDouble(values[columns.targetIdx]);
+                    for (int j = 0; j < base; j++) {
+                        double value = Double.parseDouble(values[columns.featureIdx[j]]);
+                        features[j] = plan.float32 ? (float) value : value;
+                    }
+                } catch (NumberFormatException e) {
+                    partial.unmatchedLines++;
+                    continue;
+                }
+                if (expansion != null) {
+                    for (int t = 0; t < expansion.size(); t++) {
+                        features[base + t] = expansion.value(t, features);
+                    }
+                }
+                partial.targetStats[p].add(target);
+                if (position < trainSize) {
+                    partial.folds[p][fold].add(features, target);
+                } else if (position < trainSize + valSize) {
+                    partial.validation[p].add(features, target);
+                }
+            }
+        }
+        return partial;
+    }
+
+    /**
+     * True if a key field parses and falls in a partition of this worker
+     * (invalid lines are counted by their owner only)
+     */
+    private static boolean isOwnRow(String keyField, Partial partial) {
+        try {
+            return partial.folds[partition(Integer.parseInt(keyField.trim()))] != null;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    public static void writePartial(File file, Partial partial) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (ObjectOutputStream out = new ObjectOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeUTF(partial.targetCol);
+            out.writeLong(partial.csvLength);
+            out.writeObject(partial.featureNames);
+            out.writeDouble(partial.plan.trainRatio);
+            out.writeDouble(partial.plan.valRatio);
+            out.writeInt(partial.plan.folds);
+            out.writeUTF(partial.plan.expansion);
+            out.writeBoolean(partial.plan.float32);
+            out.writeInt(partial.shard);
+            out.writeInt(partial.shards);
+            out.writeLong(partial.targetRows);
+            out.writeObject(partial.folds);
+            out.writeObject(partial.validation);
+            out.writeObject(partial.targetStats);
+            out.writeLong(partial.invalidLines);
+            out.writeLong(partial.unmatchedLines);
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    public static Partial readPartial(File file) throws IOException {
+        try (ObjectInputStream in = new ObjectInputStream(
+                new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a partial Gram file (or written by another version): " + file);
+            }
+            Partial partial = new Partial();
+            partial.targetCol = in.readUTF();
+            partial.csvLength = in.readLong();
+            partial.featureNames = (String[]) in.readObject();
+            partial.plan = new Plan(in.readDouble(), in.readDouble(), in.readInt(), in.readUTF(), in.readBoolean());
+            partial.shard = in.readInt();
+            partial.shards = in.readInt();
+            partial.targetRows = in.readLong();
+            partial.folds = (GramMatrix[][]) in.readObject();
+            partial.validation = (GramMatrix[]) in.readObject();
+            partial.targetStats = (StreamingStats[]) in.readObject();
+            partial.invalidLines = in.readLong();
+            partial.unmatchedLines = in.readLong();
+            return partial;
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException("Invalid partial Gram file " + file + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Merge the partials in partition order
+     * @throws IOException if they come from different data or settings, a
+     *         partition is missing or duplicated, or the split would differ
+     *         from the in-memory one
+     */
+    public static Merged merge(List<Partial> partials) throws IOException {
+        if (partials.isEmpty()) {
+            throw new IOException("No partial Gram files to merge");
+        }
+        Partial first = partials.get(0);
+        GramMatrix[][] folds = new GramMatrix[PARTITIONS][];
+        GramMatrix[] validation = new GramMatrix[PARTITIONS];
+        StreamingStats[] stats = new StreamingStats[PARTITIONS];
+        long unmatched = 0;
+        for (Partial partial : partials) {
+            if (!partial.targetCol.equals(first.targetCol) || partial.csvLength != first.csvLength
+                    || !Arrays.equals(partial.featureNames, first.featureNames)
+                    || partial.targetRows != first.targetRows) {
+                throw new IOException("Partials were built from different data (shard " + partial.shard
+                                      + " of " + partial.shards + ")");
+            }
+            if (!partial.plan.equals(first.plan)) {
+                throw new IOException("Partials were built with different settings: " + partial.plan
+                                      + " vs " + first.plan);
+            }
+            unmatched += partial.unmatchedLines;
+            for (int p = 0; p < PARTITIONS; p++) {
+                if (partial.folds[p] == null) continue;
+                if (folds[p] != null) {
+                    throw new IOException("Partition " + p + " is in more than one partial");
+                }
+                folds[p] = partial.folds[p];
+                validation[p] = partial.validation[p];
+                stats[p] = partial.targetStats[p];
+            }
+        }
+        if (unmatched > 0) {
+            throw new IOException(unmatched + " line(s) have a target but unparsable numbers: DataLoader skips them, "
+                                  + "so the train/validation split would not match in-memory training");
+        }
+
+        int dim = first.featureNames.length
+            + (first.plan.expansion.isEmpty() ? 0 : FeatureExpansion.fromSpec(first.plan.expansion, first.featureNames).size());
+        GramMatrix[] foldTotals = new GramMatrix[first.plan.folds];
+        GramMatrix train = new GramMatrix(dim);
+        GramMatrix validationTotal = new GramMatrix(dim);
+        StreamingStats targetStats = new StreamingStats();
+        for (int f = 0; f < foldTotals.length; f++) {
+            foldTotals[f] = new GramMatrix(dim);
+        }
+        for (int p = 0; p < PARTITIONS; p++) {
+            if (folds[p] == null) {
+                throw new IOException("Partition " + p + " is missing: not every shard was merged");
+            }
+            for (int f = 0; f < foldTotals.length; f++) {
+                foldTotals[f].merge(folds[p][f]);
+            }
+            validationTotal.merge(validation[p]);
+            targetStats.merge(stats[p]);
+        }
+        for (GramMatrix fold : foldTotals) {
+            train.merge(fold);
+        }
+        return new Merged(foldTotals, train, validationTotal, targetStats, first.featureNames, first.plan);
+    }
+
+    /**
+     * Run one worker JVM per shard on this host and merge their partials
+     * (workers = 0: accumulate in this process). The workers inherit the
+     * spending.* system properties, from which they build the same plan.
+     */
+    public static Merged runLocal(String filename, String targetCol, int workers, Plan plan) throws IOException {
+        if (workers == 0) {
+            return merge(List.of(accumulate(filename, targetCol, 0, 1, plan)));
+        }
+
+        File dir = Files.createTempDirectory("shards").toFile();
+        String java = new File(new File(System.getProperty("java.home"), "bin"), "java").getPath();
+        List<Process> processes = new ArrayList<>();
+        List<File> files = new ArrayList<>();
+        try {
+            for (int shard = 0; shard < workers; shard++) {
+                File file = new File(dir, "partial-" + shard + ".gram");
+                files.add(file);
+                List<String> command = new ArrayList<>(List.of(java, "-cp", System.getProperty("java.class.path")));
+                for (String name : System.getProperties().stringPropertyNames()) {
+                    if (name.startsWith("spending.")) {
+                        command.add("-D" + name + "=" + System.getProperty(name));
+                    }
+                }
+                command.addAll(List.of("SpendingPrediction", "shard-worker", filename,
+                                       String.valueOf(shard), String.valueOf(workers), file.getPath()));
+                processes.add(new ProcessBuilder(command).inheritIO().start());
+            }
+            for (int shard = 0; shard < workers; shard++) {
+                int exit = processes.get(shard).waitFor();
+                if (exit != 0) {
+                    throw new IOException("Worker " + shard + " failed with exit code " + exit);
+                }
+            }
+            List<Partial> partials = new ArrayList<>();
+            for (File file : files) {
+                partials.add(readPartial(file));
+            }
+            return merge(partials);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for workers", e);
+        } finally {
+            for (Process process : processes) {
+                process.destroy();
+            }
+            for (File file : files) {
+                file.delete();
+            }
+            dir.delete();
+        }
+    }
+}
@@ -8,6 +8,7 @@ import java.util.Map;
 public class SimpleScalerInfo {
     
     private Map<String, TargetScaler> scalers;
+    private boolean computed = false; // true once any range comes from the data
     
     public SimpleScalerInfo() {
         this.scalers = new HashMap<>();
@@ -76,22 +77,58 @@ public class SimpleScalerInfo {
      */
     public void printInfo() {
         System.out.println("\n" + "=".repeat(80));
-        System.out.println("SCALER INFORMATION (Estimated Ranges)");
+        System.out.println("SCALER INFORMATION (" + (computed ? "Computed from data" : "Estimated Ranges") + ")");
         System.out.println("=".repeat(80));
         
         for (Map.Entry<String, TargetScaler> entry : scalers.entrySet()) {
             TargetScaler scaler = entry.getValue();
             System.out.println("\n" + entry.getKey() + ":");
-            System.out.printf("  Min: %s\n", scaler.formatValue(scaler.min));
-            System.out.printf("  Max: %s\n", scaler.formatValue(scaler.max));
+            if (scaler.min == 0.0 && scaler.max == 1.0) {
+                System.out.println("  Scale: identity (target đã ở đơn vị thực)");
+            } else {
+                System.out.printf("  Min: %s\n", scaler.formatValue(scaler.min));
+                System.out.printf("  Max: %s\n", scaler.formatValue(scaler.max));
+            }
             System.out.printf("  Mean: %s\n", scaler.formatValue(scaler.mean));
             System.out.printf("  Median: %s\n", scaler.formatValue(scaler.median));
         }
         
         System.out.println("\n" + "=".repeat(80));
-        System.out.println("💡 Note: These are estimated ranges. For exact values,");
-        System.out.println("   run ScalerCalculator to analyze your CSV files.");
-        System.out.println("=".repeat(80));
+        if (!computed) {
+            System.out.println("💡 Note: These are estimated ranges. For exact values,");
+            System.out.println("   train with the raw dataset available so ranges are computed.");
+            System.out.println("=".repeat(80));
+        }
+    }
+    
+    /**
+     * Set exact ranges from statistics computed on the data
+     */
+    public void updateFromStats(String targetName, StreamingStats stats) {
+        updateScaler(targetName, stats.getMin(), stats.getMax(), stats.getMean(), stats.getMedian());
+    }
+    
+    /**
+     * Identity transform for a target already in real units (min 0, max 1),
+     * keeping its mean and median for display
+     */
+    public void updateIdentity(String targetName, StreamingStats stats) {
+        updateScaler(targetName, 0.0, 1.0, stats.getMean(), stats.getMedian());
+    }
+    
+    /**
+     * Scaler values as {min, max, mean, median} (for storing with a model)
+     */
+    public double[] toArray(String targetName) {
+        TargetScaler scaler = scalers.get(targetName);
+        return new double[] {scaler.min, scaler.max, scaler.mean, scaler.median};
+    }
+    
+    /**
+     * Restore scaler values stored as {min, max, mean, median}
+     */
+    public void updateFromArray(String targetName, double[] values) {
+        updateScaler(targetName, values[0], values[1], values[2], values[3]);
     }
     
     /**
@@ -100,6 +137,7 @@ public class SimpleScalerInfo {
     public void updateScaler(String targetName, double min, double max, 
                             double mean, double median) {
         scalers.put(targetName, new TargetScaler(targetName, min, max, mean, median));
+        computed = true;
         System.out.println("✓ Updated scaler for: " + targetName);
     }
     
@@ -0,0 +1,159 @@
+import java.util.Arrays;
+
+/**
+ * Sparse feature storage in CSR (compressed sparse row) format
+ * Only non-zero values are kept, so kernels cost O(nnz) instead of O(m·n):
+ *   rowPtr[i] .. rowPtr[i+1]-1 index the entries of row i in colIdx/values
+ */
+public class SparseFeatureMatrix implements FeatureMatrix {
+    private final int rows;
+    private final int cols;
+    private final int[] rowPtr;
+    private final int[] colIdx;
+    private final double[] values;
+
+    public SparseFeatureMatrix(int rows, int cols, int[] rowPtr, int[] colIdx, double[] values) {
+        this.rows = rows;
+        this.cols = cols;
+        this.rowPtr = rowPtr;
+        this.colIdx = colIdx;
+        this.values = values;
+    }
+
+    /**
+     * Convert a dense matrix to CSR
+     */
+    public static SparseFeatureMatrix fromDense(double[][] X) {
+        Builder builder = new Builder(X.length > 0 ? X[0].length : 0);
+        for (double[] row : X) {
+            builder.addRow(row);
+        }
+        return builder.build();
+    }
+
+    @Override
+    public int rows() {
+        return rows;
+    }
+
+    @Override
+    public int cols() {
+        return cols;
+    }
+
+    @Override
+    public double get(int row, int col) {
+        int pos = Arrays.binarySearch(colIdx, rowPtr[row], rowPtr[row + 1], col);
+        return pos >= 0 ? values[pos] : 0.0;
+    }
+
+    @Override
+    public double dotRow(int row, double[] theta) {
+        double sum = theta[0];
+        for (int k = rowPtr[row]; k < rowPtr[row + 1]; k++) {
+            sum += theta[colIdx[k] + 1] * values[k];
+        }
+        return sum;
+    }
+
+    @Override
+    public void addRowTo(int row, double alpha, double[] out) {
+        out[0] += alpha;
+        for (int k = rowPtr[row]; k < rowPtr[row + 1]; k++) {
+            out[colIdx[k] + 1] += alpha * values[k];
+        }
+    }
+
+    @Override
+    public int rowEntries(int row, int[] cols, double[] values) {
+        int start = rowPtr[row];
+        int count = rowPtr[row + 1] - start;
+        System.arraycopy(colIdx, start, cols, 0, count);
+        System.arraycopy(this.values, start, values, 0, count);
+        return count;
+    }
+
+    @Override
+    public double[] getRow(int row) {
+        double[] result = new double[cols];
+        for (int k = rowPtr[row]; k < rowPtr[row + 1]; k++) {
+            result[colIdx[k]] = values[k];
+        }
+        return result;
+    }
+
+    @Override
+    public FeatureMatrix selectRows(int[] indices) {
+        int nnz = 0;
+        for (int idx : indices) {
+            nnz += rowPtr[idx + 1] - rowPtr[idx];
+        }
+        int[] newRowPtr = new int[indices.length + 1];
+        int[] newColIdx = new int[nnz];
+        double[] newValues = new double[nnz];
+
+        int pos = 0;
+        for (int i = 0; i < indices.length; i++) {
+            int start = rowPtr[indices[i]];
+            int count = rowPtr[indices[i] + 1] - start;
+            System.arraycopy(colIdx, start, newColIdx, pos, count);
+            System.arraycopy(values, start, newValues, pos, count);
+            pos += count;
+            newRowPtr[i + 1] = pos;
+        }
+        return new SparseFeatureMatrix(indices.length, cols, newRowPtr, newColIdx, newValues);
+    }
+
+    @Override
+    public long nonZeros() {
+        return rowPtr[rows];
+    }
+
+    @Override
+    public long memoryBytes() {
+        return 4L * (rows + 1) + 12L * rowPtr[rows];
+    }
+
+    /**
+     * Appends rows directly into growable CSR arrays (no dense copy is kept)
+     */
+    public static class Builder implements FeatureMatrix.Builder {
+        private final int cols;
+        private int rows = 0;
+        private int[] rowPtr = new int[1024];
+        private int[] colIdx = new int[4096];
+        private double[] values = new double[4096];
+
+        public Builder(int cols) {
+            this.cols = cols;
+        }
+
+        @Override
+        public void addRow(double[] row) {
+            int nnz = rowPtr[rows];
+            if (nnz + row.length > colIdx.length) {
+                int capacity = Math.max(colIdx.length * 2, nnz + row.length);
+                colIdx = Arrays.copyOf(colIdx, capacity);
+                values = Arrays.copyOf(values, capacity);
+            }
+            for (int j = 0; j < row.length; j++) {
+                if (row[j] != 0.0) {
+                    colIdx[nnz] = j;
+                    values[nnz] = row[j];
+                    nnz++;
+                }
+            }
+            if (rows + 2 > rowPtr.length) {
+                rowPtr = Arrays.copyOf(rowPtr, rowPtr.length * 2);
+            }
+            rowPtr[++rows] = nnz;
+        }
+
+        @Override
+        public SparseFeatureMatrix build() {
+            int nnz = rowPtr[rows];
+            return new SparseFeatureMatrix(rows, cols, Arrays.copyOf(rowPtr, rows + 1),
+                                           Arrays.copyOf(colIdx, nnz), Arrays.copyOf(values, nnz));
+        }
+    }
+}
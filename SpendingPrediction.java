@@ -1,5 +1,27 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Scanner;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * Spending Prediction System - Time Series with Confidence Metrics
@@ -7,24 +29,102 @@ import java.util.Scanner;
  */
 public class SpendingPrediction {
     
-    private static LinearRegression model1, model2, model3;
-    private static DataLoader.Dataset fullDataset1, fullDataset2, fullDataset3;
+    // Prediction targets: each has its own dataset, model file and model
+    // normalized = the data file holds the target min-max scaled to [0, 1]
+    // (set false for a file already in real units)
+    private static final Target[] TARGETS = {
+        new Target("Total_Monthly_Spend", "customer_spending_cleaned_Y1_Total_Spend.csv",
+                   "model_total_spend_ts.dat", "Total Monthly Spend (Tổng chi tiêu hàng tháng)", "%,.0f VND", true),
+        new Target("Frequency_Total", "customer_spending_cleaned_Y2_Frequency.csv",
+                   "model_frequency_ts.dat", "Transaction Frequency (Tần suất giao dịch)", "%.0f lần", true),
+        new Target("Amount_Entertainment", "customer_spending_cleaned_Y3_Entertainment.csv",
+                   "model_entertainment_ts.dat", "Entertainment Spending (Chi tiêu giải trí)", "%,.0f VND", true)
+    };
     
-    // Performance metrics for confidence calculation
-    private static PerformanceMetrics metrics1, metrics2, metrics3;
+    // Model, full dataset and performance metrics per target (same order as TARGETS)
+    private static final LinearRegression[] models = new LinearRegression[TARGETS.length];
+    private static final DataLoader.Dataset[] fullDatasets = new DataLoader.Dataset[TARGETS.length];
+    private static final PerformanceMetrics[] metrics = new PerformanceMetrics[TARGETS.length];
+    private static final boolean[][] featureMasks = new boolean[TARGETS.length][]; // Stepwise selection (null = all)
+    
+    // Completes once the datasets above are loaded (null = not started yet)
+    private static volatile CompletableFuture<Void> dataReady;
+    
+    // Completes once missing metrics are re-evaluated (null = none were missing)
+    private static volatile CompletableFuture<Void> metricsReady;
+    
+    // Metrics were re-evaluated in the background and not yet written to the model files
+    private static volatile boolean metricsToStore;
     
     // Scaler for denormalization
     private static SimpleScalerInfo scalerInfo;
     
-    // Model files
-    private static final String MODEL1_FILE = "model_total_spend_ts.dat";
-    private static final String MODEL2_FILE = "model_frequency_ts.dat";
-    private static final String MODEL3_FILE = "model_entertainment_ts.dat";
+    // Materialized predictions of the target month (null: score with the models)
+    private static PredictionTable predictionTable;
+    
+    // Current-month aggregates from transaction events (null: live ingestion off)
+    // and the raw {min, max} used to scale each live column like the training features
+    private static LiveFeatureStore liveStore;
+    private static Map<String, double[]> liveScales;
+    
+    // Ordered train / validation split (the rest is the test set)
+    private static final double TRAIN_RATIO = 0.6;
+    private static final double VAL_RATIO = 0.2;
+    
+    // Folds used to tune the ridge strength
+    private static final int CV_FOLDS = 5;
+    
+    // Target pipelines trained at the same time (default: one per core)
+    // java -Dspending.trainThreads=2 SpendingPrediction
+    private static final int TRAIN_THREADS = 
+        Integer.getInteger("spending.trainThreads", Runtime.getRuntime().availableProcessors());
+    
+    // Forward/backward stepwise feature selection on the validation split (normal equation solver)
+    // java -Dspending.stepwise=true SpendingPrediction
+    private static final boolean STEPWISE = Boolean.getBoolean("spending.stepwise");
+    
+    // Ridge solver: NORMAL_EQUATION (default), CONJUGATE_GRADIENT for wide feature sets
+    // or SKETCH for quick approximate fits on very large row counts
+    // java -Dspending.solver=CONJUGATE_GRADIENT SpendingPrediction
+    private static LinearRegression.Solver SOLVER; // Parsed in main
+    
+    // SKETCH solver: sketch rows (0 = enough for ε = 0.5) and exact refinement by preconditioned CG
+    // java -Dspending.solver=SKETCH -Dspending.sketchRows=4000 -Dspending.sketchRefine=true SpendingPrediction
+    private static final int SKETCH_ROWS = Integer.getInteger("spending.sketchRows", 0);
+    private static final boolean SKETCH_REFINE = Boolean.getBoolean("spending.sketchRefine");
+    
+    // Feature storage: DENSE (default), SPARSE (CSR) for mostly-zero features,
+    // FLOAT32 to halve the memory of the feature block, OFF_HEAP (direct buffers)
+    // or MAPPED (memory-mapped file in -Dspending.mapDir) to keep features off the Java heap,
+    // ENCODED for lossless per-column compression (cached in -Dspending.mapDir)
+    // java -Dspending.storage=SPARSE SpendingPrediction
+    private static DataLoader.Storage STORAGE; // Parsed in main
+    
+    // Per-segment models, e.g. "Is_Credit_Card,Age:10" (empty = one global model per target)
+    // java -Dspending.segments=Is_Credit_Card,Age:10 [-Dspending.segmentMinRows=500] SpendingPrediction
+    private static final String SEGMENTS = System.getProperty("spending.segments", "");
     
-    // Data files
-    private static final String DATA1_FILE = "customer_spending_cleaned_Y1_Total_Spend.csv";
-    private static final String DATA2_FILE = "customer_spending_cleaned_Y2_Frequency.csv";
-    private static final String DATA3_FILE = "customer_spending_cleaned_Y3_Entertainment.csv";
+    // Extra terms generated on the fly from the features (squares, pairwise interactions, log(1+x))
+    // java "-Dspending.expand=Age*Is_Credit_Card,Tenure_Days^2,log(Amount_Food)" SpendingPrediction
+    private static final String EXPAND = System.getProperty("spending.expand", "");
+    
+    // Lag / rolling / month-over-month features computed per account at load time
+    // java -Dspending.lags=Total_Monthly_Spend_Lag1,Total_Monthly_Spend_Roll3,Amount_Food_Delta SpendingPrediction
+    private static final String LAGS = System.getProperty("spending.lags", "");
+    
+    // Live transaction events (Account_Key,timestamp,amount,category) from a growing file
+    // and/or a loopback socket; target-month features are then read from the live aggregates
+    // java -Dspending.live.tail=events.csv -Dspending.live.port=9099 SpendingPrediction
+    private static final String LIVE_TAIL = System.getProperty("spending.live.tail", "");
+    private static final int LIVE_PORT = Integer.getInteger("spending.live.port", 0);
+    
+    // Directory of the append-only segment stores (empty = parse the CSV files on every load)
+    // The first load imports each CSV once; new months are added with the 'ingest' command
+    // java -Dspending.store=store SpendingPrediction
+    private static final String STORE_DIR = System.getProperty("spending.store", "");
+    
+    // Raw (not normalized) dataset, used to compute exact target ranges for denormalize
+    private static final String RAW_DATA_FILE = "dataset_mining_final_v2.csv";
     
     // Target prediction month
     private static final int TARGET_YEAR = 2025;
@@ -32,6 +132,18 @@ public class SpendingPrediction {
     
     public static void main(String[] args) {
         try {
+            SOLVER = enumOption("spending.solver", LinearRegression.Solver.class, LinearRegression.Solver.NORMAL_EQUATION);
+            STORAGE = enumOption("spending.storage", DataLoader.Storage.class, DataLoader.Storage.DENSE);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.exit(2);
+        }
+        try {
+            // Headless scoring keeps stdout for results only
+            if (args.length > 0 && args[0].equals("score")) {
+                System.setOut(System.err);
+            }
+            
             System.out.println("=".repeat(80));
             System.out.println("CUSTOMER SPENDING PREDICTION SYSTEM v6.0");
             System.out.println("Time Series with Train/Val/Test + Confidence Metrics");
@@ -41,124 +153,716 @@ public class SpendingPrediction {
             // Initialize scaler
             scalerInfo = new SimpleScalerInfo();
             
-            // Load data
-            System.out.println("[STEP 1] Loading time series datasets... (Đang tải dữ liệu chuỗi thời gian...)");
-            System.out.println("=".repeat(80));
-            fullDataset1 = DataLoader.loadFromCSV(DATA1_FILE, "Total_Monthly_Spend");
-            fullDataset2 = DataLoader.loadFromCSV(DATA2_FILE, "Frequency_Total");
-            fullDataset3 = DataLoader.loadFromCSV(DATA3_FILE, "Amount_Entertainment");
-            System.out.println("=".repeat(80));
-            System.out.println();
+            // Non-interactive commands (java SpendingPrediction <command> ...)
+            if (args.length > 0) {
+                runCommand(args);
+                return;
+            }
+            
+            Scanner scanner = new Scanner(System.in);
             
-            // Check if models exist
-            if (ModelSerializer.modelsExist(MODEL1_FILE, MODEL2_FILE, MODEL3_FILE)) {
+            // Check if models exist (before touching the datasets)
+            if (ModelSerializer.modelsExist(modelFiles())) {
                 System.out.println("=".repeat(80));
                 System.out.println("✓ Phát hiện models đã được train trước đó!");
                 System.out.println("=".repeat(80));
                 System.out.println();
                 
-                Scanner scanner = new Scanner(System.in);
                 System.out.print("Bạn muốn:\n");
                 System.out.print("  [1] Load models có sẵn (nhanh)\n");
                 System.out.print("  [2] Train lại từ đầu\n");
-                System.out.print("Chọn (1/2): ");
+                System.out.print("  [3] Load models + đánh giá lại (re-evaluate)\n");
+                System.out.print("Chọn (1/2/3): ");
                 
                 String choice = scanner.nextLine().trim();
                 System.out.println();
                 
                 if (choice.equals("1")) {
                     loadModels();
+                    // Lookups are served from the prediction table when it is current;
+                    // otherwise datasets, account index and metrics are built in the
+                    // background while the user types the first Account_Key
+                    if (!openPredictionTable() || Arrays.asList(metrics).contains(null)) {
+                        startBackgroundDataLoad();
+                    }
+                } else if (choice.equals("3")) {
+                    loadModels();
+                    loadDatasets();
                     evaluateAllModels();
+                    saveModels();
                 } else {
+                    loadDatasets();
                     trainAndSaveModels();
                 }
             } else {
                 System.out.println("⚠ Chưa có models được train. Đang bắt đầu training...\n");
+                loadDatasets();
                 trainAndSaveModels();
             }
             
+            if (!LIVE_TAIL.isEmpty() || LIVE_PORT > 0) {
+                startLiveIngestion();
+            }
+            
             // Interactive prediction
-            interactivePrediction();
+            interactivePrediction(scanner);
+            persistComputedMetrics();
             
         } catch (Exception e) {
             System.err.println("Error: " + e.getMessage());
             e.printStackTrace();
+            // Commands report failure to their caller (e.g. shard-train waiting on its workers)
+            if (args.length > 0) {
+                System.exit(1);
+            }
         }
     }
     
-    private static void trainAndSaveModels() throws IOException {
+    /**
+     * Value of an enum system property, or its default when unset
+     * @throws IllegalArgumentException listing the valid values
+     */
+    private static <E extends Enum<E>> E enumOption(String property, Class<E> type, E defaultValue) {
+        String value = System.getProperty(property);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Enum.valueOf(type, value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("-D" + property + "=" + value + " is not valid, expected one of " 
+                                               + Arrays.toString(type.getEnumConstants()));
+        }
+    }
+    
+    /**
+     * Dispatch a command-line command
+     */
+    private static void runCommand(String[] args) throws IOException {
+        switch (args[0]) {
+            case "backtest":
+                runBacktest(args.length > 1 ? Integer.parseInt(args[1]) : 12,
+                            args.length > 2 ? Double.parseDouble(args[2]) : 0.01);
+                break;
+            case "forecast":
+                runForecast(args.length > 1 ? Integer.parseInt(args[1]) : 12,
+                            args.length > 2 ? args[2] : null);
+                break;
+            case "storage-report":
+                runStorageReport();
+                break;
+            case "score":
+                runScore(Arrays.copyOfRange(args, 1, args.length));
+                break;
+            case "materialize":
+                runMaterialize();
+                break;
+            case "ingest":
+                runIngest(Arrays.copyOfRange(args, 1, args.length));
+                break;
+            case "shard-worker":
+                runShardWorker(Arrays.copyOfRange(args, 1, args.length));
+                break;
+            case "shard-train":
+            case "shard-merge":
+                runShardTrain(args);
+                break;
+            default:
+                System.out.println("Unknown command: " + args[0]);
+                System.out.println("Usage:");
+                System.out.println("  java SpendingPrediction                           (interactive)");
+                System.out.println("  java SpendingPrediction backtest [window] [λ]     (walk-forward backtest)");
+                System.out.println("  java SpendingPrediction forecast [months] [file]   (recursive forecast, all accounts)");
+                System.out.println("  java SpendingPrediction storage-report            (DENSE vs FLOAT32 vs ENCODED memory and accuracy)");
+                System.out.println("  java SpendingPrediction score [keys|-] [--jsonl] [--out file]  (headless scoring)");
+                System.out.println("  java SpendingPrediction materialize               (rebuild the prediction table)");
+                System.out.println("  java SpendingPrediction ingest <data file> <month csv>...  (append to the segment store)");
+                System.out.println("  java SpendingPrediction shard-train <data file> [workers]   (train with N worker processes)");
+                System.out.println("  java SpendingPrediction shard-worker <data file> <shard> <shards> <partial file>");
+                System.out.println("  java SpendingPrediction shard-merge <data file> <partial file>...  (merge workers of other hosts)");
+        }
+    }
+    
+    /**
+     * Walk-forward backtest of every target: train on the previous
+     * window months, score the next month, write backtest_<target>.csv
+     */
+    private static void runBacktest(int windowMonths, double lambda) throws IOException {
+        loadDatasets();
+        
+        System.out.println("WALK-FORWARD BACKTEST (window = " + windowMonths + " months, λ = " + lambda + ")");
         System.out.println("=".repeat(80));
-        System.out.println("TRAINING MODELS WITH TRAIN/VAL/TEST SPLIT");
-        System.out.println("(ĐÀO TẠO MODELS VỚI PHÂN CHIA TRAIN/VAL/TEST)");
+        for (DataLoader.Dataset dataset : fullDatasets) {
+            List<WalkForwardBacktester.MonthResult> results = 
+                new WalkForwardBacktester(dataset, windowMonths, lambda).run();
+            WalkForwardBacktester.printResults(dataset.targetCol, results);
+            
+            String outFile = "backtest_" + dataset.targetCol + ".csv";
+            WalkForwardBacktester.writeCsv(outFile, results);
+            System.out.println("[✓] Saved: " + outFile);
+            System.out.println();
+        }
         System.out.println("=".repeat(80));
-        System.out.println();
+    }
+    
+    /**
+     * Forecast the next months for every account with the saved models,
+     * feeding each month's predictions into the next month's lag features
+     */
+    private static void runForecast(int months, String outFile) throws IOException {
+        if (!ModelSerializer.modelsExist(modelFiles())) {
+            System.out.println("⚠ Chưa có models được train. Chạy 'java SpendingPrediction' để train trước.");
+            return;
+        }
+        try {
+            loadModels();
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Invalid model file: " + e.getMessage(), e);
+        }
+        loadDatasets();
         
-        // Split datasets: 60% train, 20% val, 20% test
-        System.out.println("[STEP 2] Splitting datasets (60/20/20)... (Đang phân chia datasets...)");
-        System.out.println();
+        String filename = outFile != null ? outFile : "forecast_" + months + "m.csv";
+        HorizonForecaster forecaster = new HorizonForecaster(models, fullDatasets, months);
         
-        System.out.println("Dataset 1: Total_Monthly_Spend");
-        DataLoader.Dataset[] splits1 = DataLoader.splitTrainValTest(fullDataset1, 0.6, 0.2);
-        System.out.println();
+        System.out.println("MULTI-MONTH FORECAST (DỰ BÁO " + months + " THÁNG)");
+        System.out.println("=".repeat(80));
+        for (int t = 0; t < TARGETS.length; t++) {
+            System.out.printf("  %-22s %d features rebuilt from forecasts each month\n", 
+                             TARGETS[t].column, forecaster.derivedFeatureCount(t));
+        }
         
-        System.out.println("Dataset 2: Frequency_Total");
-        DataLoader.Dataset[] splits2 = DataLoader.splitTrainValTest(fullDataset2, 0.6, 0.2);
-        System.out.println();
+        long start = System.nanoTime();
+        int accounts = forecaster.run(filename, 
+            (t, prediction) -> scalerInfo.denormalize(TARGETS[t].column, prediction));
+        double seconds = (System.nanoTime() - start) / 1e9;
         
-        System.out.println("Dataset 3: Amount_Entertainment");
-        DataLoader.Dataset[] splits3 = DataLoader.splitTrainValTest(fullDataset3, 0.6, 0.2);
-        System.out.println();
+        System.out.printf("Forecast %,d accounts x %d months in %.2f s\n", accounts, months, seconds);
+        System.out.println("[✓] Saved: " + filename);
+        System.out.println("=".repeat(80));
+    }
+    
+    /**
+     * Score a list of Account_Keys (one per line, from a file or stdin) for the
+     * target month and write CSV or JSON lines to a file or stdout.
+     * Progress and throughput go to stderr.
+     */
+    private static void runScore(String[] args) throws IOException {
+        String keysFile = "-";
+        String outFile = null;
+        BatchScorer.Format format = BatchScorer.Format.CSV;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--jsonl")) {
+                format = BatchScorer.Format.JSONL;
+            } else if (args[i].equals("--out") && i + 1 < args.length) {
+                outFile = args[++i];
+            } else {
+                keysFile = args[i];
+            }
+        }
+        
+        if (!ModelSerializer.modelsExist(modelFiles())) {
+            System.out.println("⚠ Chưa có models được train. Chạy 'java SpendingPrediction' để train trước.");
+            return;
+        }
+        try {
+            loadModels();
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Invalid model file: " + e.getMessage(), e);
+        }
+        startBackgroundDataLoad();
+        ensureDataLoaded();
+        
+        BatchScorer scorer = new BatchScorer(models, fullDatasets, TARGET_YEAR, TARGET_MONTH,
+            (t, prediction) -> scalerInfo.denormalize(TARGETS[t].column, prediction));
+        
+        long start = System.nanoTime();
+        try (BufferedReader in = keysFile.equals("-")
+                 ? new BufferedReader(new InputStreamReader(System.in))
+                 : new BufferedReader(new FileReader(keysFile));
+             Writer out = new BufferedWriter(outFile == null
+                 ? new OutputStreamWriter(new FileOutputStream(FileDescriptor.out), StandardCharsets.UTF_8)
+                 : new FileWriter(outFile, StandardCharsets.UTF_8), 1 << 16)) {
+            scorer.run(in, out, format);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
         
-        DataLoader.Dataset train1 = splits1[0], val1 = splits1[1], test1 = splits1[2];
-        DataLoader.Dataset train2 = splits2[0], val2 = splits2[1], test2 = splits2[2];
-        DataLoader.Dataset train3 = splits3[0], val3 = splits3[1], test3 = splits3[2];
+        System.out.printf("Scored %,d keys (%,d found, %,d not found, %,d invalid lines) in %.2f s - %,.0f keys/s\n",
+                         scorer.getScored(), scorer.getFound(), scorer.getScored() - scorer.getFound(),
+                         scorer.getInvalid(), seconds, scorer.getScored() / Math.max(seconds, 1e-9));
+        if (outFile != null) {
+            System.out.println("[✓] Saved: " + outFile);
+        }
+    }
+    
+    /**
+     * Append new month files to the segment store of one dataset: only the new
+     * rows are parsed, and rows that already exist (future rows whose target
+     * has arrived) are replaced instead of duplicated
+     */
+    private static void runIngest(String[] args) throws IOException {
+        if (STORE_DIR.isEmpty()) {
+            System.out.println("⚠ Chưa cấu hình segment store. Chạy với -Dspending.store=<thư mục>.");
+            return;
+        }
+        int t = args.length > 0 ? targetIndex(args[0]) : -1;
+        if (t < 0 || args.length < 2) {
+            System.out.println("Usage: java -Dspending.store=<dir> SpendingPrediction ingest <data file|target> <month csv>...");
+            return;
+        }
         
-        // Train models
-        System.out.println("[STEP 3] Training models... (Đang đào tạo models...)");
+        System.out.println("DELTA INGEST: " + TARGETS[t].dataFile + " -> " + storeDir(t));
         System.out.println("=".repeat(80));
+        SegmentStore store = SegmentStore.openOrImport(storeDir(t), TARGETS[t].dataFile);
+        for (int i = 1; i < args.length; i++) {
+            long start = System.nanoTime();
+            SegmentStore.IngestResult result = store.ingest(args[i]);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%s: %,d new rows, %,d updated (%,d with new values), %,d invalid lines in %.2f s\n",
+                             args[i], result.appended, result.upserted, result.filled, result.invalid, seconds);
+        }
+        StreamingStats stats = store.getStats(TARGETS[t].column);
+        System.out.printf("Store: %,d rows in %d segments\n", store.getRowCount(), store.getSegmentCount());
+        System.out.printf("%s (first-seen): %,d values, mean %.6f, min %.6f, max %.6f\n", TARGETS[t].column,
+                         stats.getCount(), stats.getMean(), stats.getMin(), stats.getMax());
+        System.out.println("=".repeat(80));
+    }
+    
+    /**
+     * Target of a data file name or target column, -1 if none
+     */
+    private static int targetIndex(String arg) {
+        for (int t = 0; t < TARGETS.length; t++) {
+            if (arg.equals(TARGETS[t].dataFile) || arg.equals(TARGETS[t].column)) {
+                return t;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * Worker of the sharded training: accumulate the partitions of one shard
+     * and write them to a partial file (run on any host that has the CSV)
+     */
+    private static void runShardWorker(String[] args) throws IOException {
+        int t = args.length == 4 ? targetIndex(args[0]) : -1;
+        if (t < 0) {
+            System.out.println("Usage: java SpendingPrediction shard-worker <data file|target> <shard> <shards> <partial file>");
+            System.exit(2);
+        }
+        int shard = Integer.parseInt(args[1]);
+        int shards = Integer.parseInt(args[2]);
+        long start = System.nanoTime();
+        ShardedTrainer.Partial partial = 
+            ShardedTrainer.accumulate(TARGETS[t].dataFile, TARGETS[t].column, shard, shards, shardPlan());
+        ShardedTrainer.writePartial(new File(args[3]), partial);
+        System.out.printf("[shard %d/%d] %,d train rows, %,d invalid lines -> %s (%.2f s)\n", shard, shards,
+                         partial.trainRows(), partial.invalidLines, args[3], (System.nanoTime() - start) / 1e9);
+    }
+    
+    /**
+     * Split and model settings of trainTarget, shared by every shard worker
+     */
+    private static ShardedTrainer.Plan shardPlan() {
+        return new ShardedTrainer.Plan(TRAIN_RATIO, VAL_RATIO, CV_FOLDS, EXPAND, 
+                                       STORAGE == DataLoader.Storage.FLOAT32);
+    }
+    
+    /**
+     * Sharded training of one target, equivalent to trainTarget:
+     *   shard-train <target> [workers]      run the workers on this host (0 = in this process)
+     *   shard-merge <target> <partial>...   merge partial files written by shard-worker elsewhere
+     * The workers apply the same train split, CV folds, float rounding and
+     * feature expansion; λ is tuned and stepwise selection runs on the merged
+     * Gram matrices. θ matches in-memory training up to summation order.
+     * No metrics are stored: they are evaluated on the next load.
+     */
+    private static void runShardTrain(String[] args) throws IOException {
+        boolean merge = args[0].equals("shard-merge");
+        int t = args.length > 1 ? targetIndex(args[1]) : -1;
+        if (t < 0 || (merge && args.length < 3)) {
+            System.out.println("Usage: java SpendingPrediction shard-train <data file|target> [workers]");
+            System.out.println("       java SpendingPrediction shard-merge <data file|target> <partial file>...");
+            return;
+        }
+        String unsupported = !LAGS.isEmpty() ? "-Dspending.lags"
+            : !SEGMENTS.isEmpty() ? "-Dspending.segments"
+            : !STORE_DIR.isEmpty() ? "-Dspending.store"
+            : SOLVER != LinearRegression.Solver.NORMAL_EQUATION ? "-Dspending.solver=" + SOLVER
+            : null;
+        if (unsupported != null) {
+            System.out.println("⚠ Sharded training reads the CSV rows and solves the normal equations: " 
+                               + unsupported + " is not supported");
+            return;
+        }
+        Target target = TARGETS[t];
+        ShardedTrainer.Plan plan = shardPlan();
         
-        System.out.println("\n>>> Model 1: Total Monthly Spend (Tổng chi tiêu hàng tháng) <<<");
-        System.out.println("Features: " + train1.X[0].length);
-        model1 = new LinearRegression("Total_Monthly_Spend");
-        model1.train(train1.X, train1.getYPrimitive());
+        System.out.println("SHARDED TRAINING (TRAIN PHÂN TÁN): " + target.column);
+        System.out.println("=".repeat(80));
+        long start = System.nanoTime();
+        ShardedTrainer.Merged merged;
+        if (merge) {
+            List<ShardedTrainer.Partial> partials = new ArrayList<>();
+            for (int i = 2; i < args.length; i++) {
+                partials.add(ShardedTrainer.readPartial(new File(args[i])));
+            }
+            merged = ShardedTrainer.merge(partials);
+        } else {
+            int workers = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+            System.out.println("Workers: " + (workers == 0 ? "in process" : workers + " processes") 
+                               + ", " + ShardedTrainer.PARTITIONS + " Account_Key partitions");
+            merged = ShardedTrainer.runLocal(target.dataFile, target.column, workers, plan);
+        }
+        if (!merged.plan.equals(plan)) {
+            throw new IOException("Partials were built with " + merged.plan + ", expected " + plan);
+        }
+        System.out.printf("Train rows: %,d, validation rows: %,d (%s)\n", 
+                         merged.train.getCount(), merged.validation.getCount(), plan);
         
-        System.out.println("\n>>> Model 2: Transaction Frequency (Tần suất giao dịch) <<<");
-        System.out.println("Features: " + train2.X[0].length);
-        model2 = new LinearRegression("Frequency_Total");
-        model2.train(train2.X, train2.getYPrimitive());
+        // Keep the scaler of the last regular training, if any
+        if (ModelSerializer.modelsExist(new String[] {target.modelFile})) {
+            try {
+                restoreScaler(ModelSerializer.loadModelWithMetadata(target.column, target.modelFile));
+            } catch (ClassNotFoundException e) {
+                throw new IOException("Invalid model file: " + e.getMessage(), e);
+            }
+        }
+        applyRealUnitScaler(target, merged.targetStats);
         
-        System.out.println("\n>>> Model 3: Entertainment Spending (Chi tiêu giải trí) <<<");
-        System.out.println("Features: " + train3.X[0].length);
-        model3 = new LinearRegression("Amount_Entertainment");
-        model3.train(train3.X, train3.getYPrimitive());
+        LinearRegression model = new LinearRegression(target.column);
+        String[] names = merged.featureNames;
+        if (!EXPAND.isEmpty()) {
+            model.setExpansion(FeatureExpansion.fromSpec(EXPAND, merged.featureNames));
+            names = model.getExpansion().expandNames(names);
+            System.out.println("Expansion terms (Feature mở rộng): " + model.getExpansion());
+        }
+        model.setLambda(selectLambda(target.column, 
+                                     CrossValidator.crossValidate(merged.folds, CrossValidator.defaultLambdaGrid())));
+        if (STEPWISE) {
+            StepwiseSelector.Result selection = selectFeatures(model, merged.train, merged.validation, names);
+            model.setTheta(selection.theta);
+            featureMasks[t] = selection.mask;
+        } else {
+            model.fitGram(merged.train);
+            featureMasks[t] = null;
+        }
+        models[t] = model;
+        metrics[t] = null;
         
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Features: %d, λ = %.3g, target mean %.6f (%.2f s)\n",
+                         model.getTheta().length - 1, model.getLambda(), merged.targetStats.getMean(), seconds);
+        System.out.printf("Train RMSE (from X^T X): %.6f\n", 
+                         Math.sqrt(merged.train.sumSquaredError(model.getTheta()) / merged.train.getCount()));
+        System.out.printf("θ checksum: %08x\n", Arrays.hashCode(model.getTheta()));
+        ModelSerializer.saveModel(model, target.modelFile, modelMetadata(t));
+        System.out.println("Metrics are evaluated on the next load (Chỉ số được đánh giá khi tải lại)");
+        System.out.println("=".repeat(80));
+    }
+    
+    /**
+     * Rebuild the prediction table from the saved models
+     */
+    private static void runMaterialize() throws IOException {
+        if (!ModelSerializer.modelsExist(modelFiles())) {
+            System.out.println("⚠ Chưa có models được train. Chạy 'java SpendingPrediction' để train trước.");
+            return;
+        }
+        try {
+            loadModels();
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Invalid model file: " + e.getMessage(), e);
+        }
+        loadDatasets();
+        materializePredictions();
+    }
+    
+    /**
+     * Score every future row of the target month once and store the results,
+     * with the previous month's values, in a table sorted by Account_Key
+     */
+    private static void materializePredictions() throws IOException {
+        System.out.println("[STEP 6] Materializing predictions... (Đang tính trước dự báo...)");
+        String filename = predictionTableFile();
+        long start = System.nanoTime();
+        int accounts = PredictionTable.materialize(filename, predictionFingerprint(), models, fullDatasets,
+            TARGET_YEAR, TARGET_MONTH, (t, prediction) -> scalerInfo.denormalize(TARGETS[t].column, prediction));
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Materialized %,d accounts for %d/%d in %.2f s\n", 
+                         accounts, TARGET_MONTH, TARGET_YEAR, seconds);
+        System.out.println("[✓] Saved: " + filename);
         System.out.println();
+        predictionTable = PredictionTable.open(filename);
+    }
+    
+    /**
+     * Map the prediction table if it was built from the loaded models and the current data
+     * @return true if lookups can be served from the table
+     */
+    private static boolean openPredictionTable() {
+        String filename = predictionTableFile();
+        if (!new File(filename).exists()) {
+            return false;
+        }
+        try {
+            PredictionTable table = PredictionTable.open(filename);
+            if (table.getFingerprint() != predictionFingerprint()) {
+                System.out.println("⚠ Prediction table is out of date - predictions will be computed from the models");
+                return false;
+            }
+            predictionTable = table;
+            System.out.printf("✓ Loaded prediction table: %,d accounts (Đã tải bảng dự báo)\n", table.size());
+            return true;
+        } catch (IOException e) {
+            System.err.println("Warning: could not open prediction table: " + e.getMessage());
+            return false;
+        }
+    }
+    
+    private static String predictionTableFile() {
+        return "predictions_" + TARGET_YEAR + "_" + TARGET_MONTH + ".tbl";
+    }
+    
+    /**
+     * Identifies what a prediction table depends on: target month, datasets,
+     * model coefficients and scaler ranges
+     */
+    @SuppressWarnings("unchecked")
+    private static long predictionFingerprint() {
+        long hash = TARGET_YEAR * 12L + TARGET_MONTH;
+        for (int t = 0; t < TARGETS.length; t++) {
+            hash = hash * 31 + dataFingerprint(t);
+            hash = hash * 31 + Arrays.hashCode(models[t].getTheta());
+            hash = hash * 31 + Arrays.hashCode(scalerInfo.toArray(TARGETS[t].column));
+            if (models[t] instanceof SegmentedModel) {
+                Map<String, Object> segments = new HashMap<>();
+                ((SegmentedModel) models[t]).writeMetadata(segments);
+                long segmentHash = 0;
+                for (Map.Entry<Long, double[]> entry : 
+                         ((Map<Long, double[]>) segments.get(ModelSerializer.META_SEGMENT_THETAS)).entrySet()) {
+                    segmentHash += Long.hashCode(entry.getKey()) * 31L + Arrays.hashCode(entry.getValue());
+                }
+                hash = hash * 31 + segmentHash;
+            }
+        }
+        return hash;
+    }
+    
+    /**
+     * Compare double and float32 feature storage: memory of the feature block
+     * and test R² / MAPE of a model trained on each (same split, same λ)
+     */
+    private static void runStorageReport() throws IOException {
+        System.out.println("STORAGE REPORT: DENSE (double) vs FLOAT32 vs ENCODED");
         System.out.println("=".repeat(80));
-        
-        // Evaluate on all sets
-        System.out.println("\n[STEP 4] Evaluating models... (Đang đánh giá models...)");
+        System.out.printf("%-22s %-8s %12s %10s %10s\n", "Target", "Storage", "Memory (MB)", "Test R²", "Test MAPE");
+        DataLoader.Storage[] storages = {DataLoader.Storage.DENSE, DataLoader.Storage.FLOAT32, DataLoader.Storage.ENCODED};
+        for (Target target : TARGETS) {
+            PerformanceMetrics[] results = new PerformanceMetrics[storages.length];
+            long[] memory = new long[storages.length];
+            for (int s = 0; s < storages.length; s++) {
+                DataLoader.Dataset dataset = DataLoader.loadFromCSV(target.dataFile, target.column, false, storages[s]);
+                DataLoader.Dataset[] splits = DataLoader.splitTrainValTest(dataset, TRAIN_RATIO, VAL_RATIO, false);
+                LinearRegression model = new LinearRegression(target.column);
+                model.train(splits[0].matrix, splits[0].getYPrimitive());
+                results[s] = evaluateModelOnAllSets(model, splits[0], splits[1], splits[2], false);
+                memory[s] = dataset.matrix.memoryBytes();
+            }
+            for (int s = 0; s < storages.length; s++) {
+                System.out.printf("%-22s %-8s %12.1f %9.4f%% %9.4f%%\n", target.column, storages[s],
+                                 memory[s] / 1e6, results[s].testR2 * 100, results[s].testMAPE);
+            }
+            for (int s = 1; s < storages.length; s++) {
+                System.out.printf("%-22s %-8s %11.1f%% %+9.2e %+9.2e\n", "", "Δ " + storages[s],
+                                 100.0 * (memory[s] - memory[0]) / memory[0],
+                                 results[s].testR2 - results[0].testR2, results[s].testMAPE - results[0].testMAPE);
+            }
+            long csvBytes = new File(target.dataFile).length();
+            long encodedBytes = DataLoader.encodedFile(target.dataFile, target.column).length();
+            System.out.printf("%-22s On disk: CSV %.1f MB, encoded %.1f MB (%.1fx smaller)\n", "",
+                             csvBytes / 1e6, encodedBytes / 1e6, (double) csvBytes / Math.max(1, encodedBytes));
+            System.out.println();
+        }
+        System.out.println("=".repeat(80));
+    }
+    
+    /**
+     * Load every target's dataset in the foreground (needed before training)
+     */
+    private static void loadDatasets() throws IOException {
+        System.out.println("[STEP 1] Loading time series datasets... (Đang tải dữ liệu chuỗi thời gian...)");
+        System.out.println("=".repeat(80));
+        for (int t = 0; t < TARGETS.length; t++) {
+            fullDatasets[t] = loadDataset(t, true);
+        }
         System.out.println("=".repeat(80));
-        
-        metrics1 = evaluateModelOnAllSets(model1, train1, val1, test1);
         System.out.println();
+        dataReady = CompletableFuture.completedFuture(null);
+    }
+    
+    /**
+     * Load the datasets in parallel on background threads and build the
+     * account index; missing confidence metrics are re-evaluated afterwards
+     * on their own future, so lookups do not wait for them
+     */
+    private static synchronized void startBackgroundDataLoad() {
+        if (dataReady != null) {
+            return;
+        }
+        List<CompletableFuture<DataLoader.Dataset>> loads = new ArrayList<>();
+        for (int t = 0; t < TARGETS.length; t++) {
+            loads.add(loadAsync(t));
+        }
         
-        metrics2 = evaluateModelOnAllSets(model2, train2, val2, test2);
+        dataReady = CompletableFuture.allOf(loads.toArray(new CompletableFuture<?>[0])).thenRun(() -> {
+            for (int t = 0; t < TARGETS.length; t++) {
+                fullDatasets[t] = loads.get(t).join();
+                fullDatasets[t].getSeries();
+            }
+        });
+        if (Arrays.asList(metrics).contains(null)) {
+            metricsReady = dataReady.thenRunAsync(() -> {
+                computeMetricsQuietly();
+                metricsToStore = true;
+            });
+        }
+    }
+    
+    /**
+     * Metrics of a target, or null while they are still being re-evaluated
+     */
+    private static PerformanceMetrics availableMetrics(int t) {
+        CompletableFuture<Void> pending = metricsReady;
+        return pending == null || pending.isDone() ? metrics[t] : null;
+    }
+    
+    /**
+     * Store metrics computed in the background so the next start can skip
+     * re-evaluation. Runs on the main thread before exit (background threads
+     * are daemons and could be cut off halfway through a model file).
+     */
+    private static void persistComputedMetrics() {
+        if (metricsReady == null) {
+            return;
+        }
+        try {
+            metricsReady.join();
+        } catch (CompletionException e) {
+            return;
+        }
+        if (!metricsToStore) {
+            return;
+        }
+        try {
+            for (int t = 0; t < TARGETS.length; t++) {
+                ModelSerializer.saveModel(models[t], TARGETS[t].modelFile, modelMetadata(t), false);
+            }
+            metricsToStore = false;
+        } catch (IOException e) {
+            System.err.println("Warning: could not store metrics: " + e.getMessage());
+        }
+    }
+    
+    private static CompletableFuture<DataLoader.Dataset> loadAsync(int t) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return loadDataset(t, false);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+    
+    /**
+     * Dataset of one target, from its CSV or from its segment store
+     */
+    private static DataLoader.Dataset loadDataset(int t, boolean verbose) throws IOException {
+        Target target = TARGETS[t];
+        DataLoader.Dataset dataset;
+        if (STORE_DIR.isEmpty()) {
+            dataset = DataLoader.loadFromCSV(target.dataFile, target.column, verbose, STORAGE);
+        } else {
+            SegmentStore store = SegmentStore.openOrImport(storeDir(t), target.dataFile);
+            dataset = store.toDataset(target.column, STORAGE);
+            if (verbose) {
+                System.out.println("Loading: " + storeDir(t) + " (" + store.getSegmentCount() + " segments)");
+                System.out.println("Target column: " + target.column);
+                System.out.println("Loaded " + dataset.matrix.rows() + " rows with " + dataset.matrix.cols() + " features");
+                System.out.println();
+            }
+        }
+        if (!LAGS.isEmpty()) {
+            LagFeatureEngine engine = LagFeatureEngine.fromSpec(LAGS);
+            int rows = dataset.matrix.rows();
+            dataset = engine.augment(dataset, STORAGE);
+            if (verbose) {
+                System.out.printf("Lag features (Feature trễ): +%d columns, %,d rows without enough history dropped\n",
+                                 engine.size(), rows - dataset.matrix.rows());
+                System.out.println();
+            }
+        }
+        return dataset;
+    }
+    
+    private static File storeDir(int t) {
+        return new File(STORE_DIR, new File(TARGETS[t].dataFile).getName() + ".store");
+    }
+    
+    /**
+     * Identifies the data a target was trained on (CSV file or segment store)
+     */
+    private static long dataFingerprint(int t) {
+        long fingerprint = STORE_DIR.isEmpty() ? DataLoader.fingerprint(TARGETS[t].dataFile) 
+                                               : SegmentStore.fingerprint(storeDir(t));
+        return fingerprint * 31 + LAGS.hashCode();
+    }
+    
+    /**
+     * Block until the datasets (and account index) are available
+     */
+    private static void ensureDataLoaded() {
+        startBackgroundDataLoad();
+        if (!dataReady.isDone()) {
+            System.out.println("⏳ Đang tải dữ liệu... (Loading data...)");
+        }
+        try {
+            dataReady.join();
+        } catch (CompletionException e) {
+            throw new RuntimeException("Failed to load datasets: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+    
+    /**
+     * Train every target concurrently. Each target runs its own pipeline
+     * (split → train → evaluate → save); console output is printed per target,
+     * in target order, and failures are reported together at the end.
+     */
+    private static void trainAndSaveModels() throws IOException {
+        System.out.println("=".repeat(80));
+        System.out.println("TRAINING MODELS WITH TRAIN/VAL/TEST SPLIT");
+        System.out.println("(ĐÀO TẠO MODELS VỚI PHÂN CHIA TRAIN/VAL/TEST)");
+        System.out.println("=".repeat(80));
         System.out.println();
         
-        metrics3 = evaluateModelOnAllSets(model3, train3, val3, test3);
+        computeScalers();
+        
+        System.out.printf("Training %d targets on up to %d threads... (Đang đào tạo song song...)\n",
+                         TARGETS.length, Math.min(TRAIN_THREADS, TARGETS.length));
         System.out.println();
         
-        System.out.println("=".repeat(80));
+        List<String> names = new ArrayList<>();
+        List<Callable<Void>> pipelines = new ArrayList<>();
+        for (int t = 0; t < TARGETS.length; t++) {
+            final int target = t;
+            names.add(TARGETS[t].column);
+            pipelines.add(() -> {
+                trainTarget(target);
+                return null;
+            });
+        }
+        OrderedConsole.runAll(names, pipelines, TRAIN_THREADS);
         
-        // Save models
-        System.out.println("\n[STEP 5] Saving models... (Đang lưu models...)");
-        System.out.println("-".repeat(80));
-        ModelSerializer.saveModel(model1, MODEL1_FILE);
-        ModelSerializer.saveModel(model2, MODEL2_FILE);
-        ModelSerializer.saveModel(model3, MODEL3_FILE);
-        System.out.println("-".repeat(80));
-        System.out.println("✓ Models saved! (Đã lưu models!)");
-        System.out.println();
+        materializePredictions();
         
         System.out.println("=".repeat(80));
         System.out.println("TRAINING COMPLETED! (ĐÀO TẠO HOÀN TẤT!)");
@@ -166,15 +870,107 @@ public class SpendingPrediction {
         System.out.println();
     }
     
+    /**
+     * Split, train, evaluate and save the model of one target
+     */
+    private static void trainTarget(int t) throws IOException {
+        Target target = TARGETS[t];
+        System.out.println("=".repeat(80));
+        System.out.println(">>> Model " + (t + 1) + ": " + target.title + " <<<");
+        System.out.println("=".repeat(80));
+        
+        // Split dataset: 60% train, 20% val, 20% test
+        System.out.println("[STEP 2] Splitting dataset (60/20/20)... (Đang phân chia dataset...)");
+        DataLoader.Dataset[] splits = DataLoader.splitTrainValTest(fullDatasets[t], TRAIN_RATIO, VAL_RATIO);
+        DataLoader.Dataset train = splits[0], val = splits[1], test = splits[2];
+        System.out.println();
+        
+        // Train model
+        System.out.println("[STEP 3] Training model... (Đang đào tạo model...)");
+        System.out.println("Features: " + train.matrix.cols());
+        LinearRegression model = createModel(target.column, train);
+        if (STEPWISE && !(model instanceof SegmentedModel) && SOLVER == LinearRegression.Solver.NORMAL_EQUATION) {
+            StepwiseSelector.Result selection = selectFeatures(model, train, val);
+            model.setTheta(selection.theta);
+            featureMasks[t] = selection.mask;
+        } else {
+            model.train(train.matrix, train.getYPrimitive());
+            featureMasks[t] = null;
+        }
+        System.out.println();
+        
+        // Evaluate on all sets
+        System.out.println("[STEP 4] Evaluating model... (Đang đánh giá model...)");
+        PerformanceMetrics result = evaluateModelOnAllSets(model, train, val, test);
+        System.out.println();
+        models[t] = model;
+        metrics[t] = result;
+        
+        // Save model
+        System.out.println("[STEP 5] Saving model... (Đang lưu model...)");
+        ModelSerializer.saveModel(model, target.modelFile, modelMetadata(t));
+        System.out.println();
+    }
+    
+    /**
+     * Stepwise selection from the training and validation Gram matrices;
+     * the returned θ is 0 for every dropped feature
+     */
+    private static StepwiseSelector.Result selectFeatures(LinearRegression model,
+                                                          DataLoader.Dataset train, DataLoader.Dataset val) {
+        FeatureMatrix trainX = model.expand(train.matrix);
+        FeatureMatrix valX = model.expand(val.matrix);
+        GramMatrix trainGram = new GramMatrix(trainX.cols());
+        trainGram.addAll(trainX, train.getYPrimitive(), 0, trainX.rows());
+        GramMatrix valGram = new GramMatrix(valX.cols());
+        valGram.addAll(valX, val.getYPrimitive(), 0, valX.rows());
+        
+        String[] names = train.featureNames;
+        if (names != null && model.getExpansion() != null) {
+            names = model.getExpansion().expandNames(names);
+        }
+        return selectFeatures(model, trainGram, valGram, names);
+    }
+    
+    private static StepwiseSelector.Result selectFeatures(LinearRegression model, GramMatrix trainGram,
+                                                          GramMatrix valGram, String[] names) {
+        StepwiseSelector.Result selection = new StepwiseSelector(trainGram, valGram, model.getLambda()).select();
+        selection.print(model.getModelName(), names);
+        return selection;
+    }
+    
     private static void loadModels() throws IOException, ClassNotFoundException {
         System.out.println("=".repeat(80));
         System.out.println("LOADING PRE-TRAINED MODELS (ĐANG TẢI MODELS ĐÃ TRAIN)");
         System.out.println("=".repeat(80));
         System.out.println();
         
-        model1 = ModelSerializer.loadModel("Total_Monthly_Spend", MODEL1_FILE);
-        model2 = ModelSerializer.loadModel("Frequency_Total", MODEL2_FILE);
-        model3 = ModelSerializer.loadModel("Amount_Entertainment", MODEL3_FILE);
+        for (int t = 0; t < TARGETS.length; t++) {
+            ModelSerializer.SavedModel saved = 
+                ModelSerializer.loadModelWithMetadata(TARGETS[t].column, TARGETS[t].modelFile);
+            models[t] = SegmentedModel.fromSaved(saved);
+            restoreLambda(models[t], saved);
+            restoreScaler(saved);
+            Object lags = saved.metadata.getOrDefault(ModelSerializer.META_LAG_FEATURES, "");
+            if (!LAGS.equals(lags)) {
+                throw new IOException("Model " + TARGETS[t].modelFile + " was trained with lag features \"" + lags
+                                      + "\" but -Dspending.lags is \"" + LAGS + "\": train again (chọn [2])");
+            }
+            Object expansion = saved.metadata.get(ModelSerializer.META_EXPANSION);
+            if (expansion instanceof FeatureExpansion) {
+                models[t].setExpansion((FeatureExpansion) expansion);
+            }
+            Object mask = saved.metadata.get(ModelSerializer.META_FEATURE_MASK);
+            featureMasks[t] = mask instanceof boolean[] ? (boolean[]) mask : null;
+            
+            // Stored metrics are only trusted if the dataset has not changed since training
+            metrics[t] = storedMetrics(saved, t);
+        }
+        if (!Arrays.asList(metrics).contains(null)) {
+            System.out.println("✓ Loaded stored evaluation metrics (Đã tải chỉ số đánh giá)");
+        } else {
+            System.out.println("⚠ Dataset changed or no stored metrics - will re-evaluate in background");
+        }
         
         System.out.println();
         System.out.println("=".repeat(80));
@@ -183,55 +979,216 @@ public class SpendingPrediction {
         System.out.println();
     }
     
+    private static void restoreScaler(ModelSerializer.SavedModel saved) {
+        Object scaler = saved.metadata.get(ModelSerializer.META_SCALER);
+        if (scaler instanceof double[]) {
+            scalerInfo.updateFromArray(saved.model.getModelName(), (double[]) scaler);
+        }
+    }
+    
+    /**
+     * Replace the estimated scaler ranges with statistics from the data.
+     * Targets already on their real scale use the statistics gathered during
+     * the load pass; normalized targets are scanned once in the raw dataset.
+     * The result is stored with the models, so loading never rescans.
+     */
+    private static void computeScalers() throws IOException {
+        List<String> normalizedTargets = new ArrayList<>();
+        for (int t = 0; t < TARGETS.length; t++) {
+            if (!applyRealUnitScaler(TARGETS[t], fullDatasets[t].targetStats)) {
+                normalizedTargets.add(TARGETS[t].column);
+            }
+        }
+        
+        if (!normalizedTargets.isEmpty() && new File(RAW_DATA_FILE).exists()) {
+            System.out.println("Computing target ranges from " + RAW_DATA_FILE + "...");
+            Map<String, StreamingStats> rawStats = 
+                DataLoader.scanColumnStats(RAW_DATA_FILE, normalizedTargets.toArray(new String[0]));
+            for (Map.Entry<String, StreamingStats> entry : rawStats.entrySet()) {
+                if (entry.getValue().getCount() > 0) {
+                    scalerInfo.updateFromStats(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+        System.out.println();
+    }
+    
+    /**
+     * Identity scaler for a target configured as real units (predictions
+     * need no denormalization). Returns false for a normalized target,
+     * whose range has to come from the raw dataset.
+     */
+    private static boolean applyRealUnitScaler(Target target, StreamingStats stats) {
+        if (target.normalized) {
+            return false;
+        }
+        if (stats != null && stats.getCount() > 0) {
+            scalerInfo.updateIdentity(target.column, stats);
+        }
+        return true;
+    }
+    
+    private static void restoreLambda(LinearRegression model, ModelSerializer.SavedModel saved) {
+        Object lambda = saved.metadata.get(ModelSerializer.META_LAMBDA);
+        if (lambda instanceof Double) {
+            model.setLambda((Double) lambda);
+        }
+    }
+    
+    /**
+     * Create a model with the configured solver
+     * λ is tuned by cross-validation only for the normal equation solver,
+     * since the CV engine needs the full Gram matrix
+     */
+    private static LinearRegression createModel(String modelName, DataLoader.Dataset train) {
+        LinearRegression model = SEGMENTS.isEmpty()
+            ? new LinearRegression(modelName)
+            : SegmentedModel.fromSpec(modelName, SEGMENTS, train.featureNames, 
+                                      Integer.getInteger("spending.segmentMinRows", 0));
+        model.setSolver(SOLVER);
+        model.setSketchSettings(SKETCH_ROWS, SKETCH_REFINE, 42);
+        if (!EXPAND.isEmpty()) {
+            if (model instanceof SegmentedModel) {
+                System.out.println("⚠ Feature expansion is not supported with segments - ignored");
+            } else {
+                model.setExpansion(FeatureExpansion.fromSpec(EXPAND, train.featureNames));
+                System.out.println("Expansion terms (Feature mở rộng): " + model.getExpansion());
+            }
+        }
+        if (SOLVER == LinearRegression.Solver.NORMAL_EQUATION) {
+            model.setLambda(tuneLambda(modelName, model.expand(train.matrix), train.getYPrimitive()));
+        }
+        return model;
+    }
+    
+    /**
+     * Pick the ridge strength by k-fold cross-validation on the training split
+     */
+    private static double tuneLambda(String modelName, FeatureMatrix X, double[] y) {
+        return selectLambda(modelName, CrossValidator.crossValidate(
+            X, y, CV_FOLDS, CrossValidator.defaultLambdaGrid()));
+    }
+    
+    private static double selectLambda(String modelName, CrossValidator.CVResult cv) {
+        cv.print(modelName);
+        System.out.printf("Selected λ = %.3g\n", cv.bestLambda);
+        return cv.bestLambda;
+    }
+    
+    /**
+     * Read metrics stored with a model, or null if missing or the data file changed
+     */
+    private static PerformanceMetrics storedMetrics(ModelSerializer.SavedModel saved, int t) {
+        Object metrics = saved.metadata.get(ModelSerializer.META_METRICS);
+        Object fingerprint = saved.metadata.get(ModelSerializer.META_DATA_FINGERPRINT);
+        if (!(metrics instanceof double[]) || !(fingerprint instanceof Long)
+                || (Long) fingerprint != dataFingerprint(t)) {
+            return null;
+        }
+        return PerformanceMetrics.fromArray((double[]) metrics);
+    }
+    
+    /**
+     * Rewrite every model file: θ and metadata, including the re-evaluated
+     * metrics and dataset fingerprint
+     */
+    private static void saveModels() throws IOException {
+        for (int t = 0; t < TARGETS.length; t++) {
+            ModelSerializer.saveModel(models[t], TARGETS[t].modelFile, modelMetadata(t));
+        }
+    }
+    
+    private static Map<String, Object> modelMetadata(int t) {
+        LinearRegression model = models[t];
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put(ModelSerializer.META_LAMBDA, model.getLambda());
+        metadata.put(ModelSerializer.META_SCALER, scalerInfo.toArray(model.getModelName()));
+        if (model instanceof SegmentedModel) {
+            ((SegmentedModel) model).writeMetadata(metadata);
+        }
+        if (model.getExpansion() != null) {
+            metadata.put(ModelSerializer.META_EXPANSION, model.getExpansion());
+        }
+        if (!LAGS.isEmpty()) {
+            metadata.put(ModelSerializer.META_LAG_FEATURES, LAGS);
+        }
+        if (featureMasks[t] != null) {
+            metadata.put(ModelSerializer.META_FEATURE_MASK, featureMasks[t]);
+        }
+        if (metrics[t] != null) {
+            metadata.put(ModelSerializer.META_METRICS, metrics[t].toArray());
+        }
+        metadata.put(ModelSerializer.META_DATA_FINGERPRINT, dataFingerprint(t));
+        return metadata;
+    }
+    
+    /**
+     * Re-evaluate loaded models on all splits (on demand)
+     */
     private static void evaluateAllModels() {
         System.out.println("=".repeat(80));
         System.out.println("EVALUATING LOADED MODELS (ĐÁNH GIÁ MODELS ĐÃ TẢI)");
         System.out.println("=".repeat(80));
         System.out.println();
         
-        DataLoader.Dataset[] splits1 = DataLoader.splitTrainValTest(fullDataset1, 0.6, 0.2);
-        DataLoader.Dataset[] splits2 = DataLoader.splitTrainValTest(fullDataset2, 0.6, 0.2);
-        DataLoader.Dataset[] splits3 = DataLoader.splitTrainValTest(fullDataset3, 0.6, 0.2);
-        
-        metrics1 = evaluateModelOnAllSets(model1, splits1[0], splits1[1], splits1[2]);
-        System.out.println();
-        
-        metrics2 = evaluateModelOnAllSets(model2, splits2[0], splits2[1], splits2[2]);
-        System.out.println();
-        
-        metrics3 = evaluateModelOnAllSets(model3, splits3[0], splits3[1], splits3[2]);
-        System.out.println();
+        for (int t = 0; t < TARGETS.length; t++) {
+            DataLoader.Dataset[] splits = DataLoader.splitTrainValTest(fullDatasets[t], TRAIN_RATIO, VAL_RATIO);
+            metrics[t] = evaluateModelOnAllSets(models[t], splits[0], splits[1], splits[2]);
+            System.out.println();
+        }
         
         System.out.println("=".repeat(80));
     }
     
+    /**
+     * Compute confidence metrics for loaded models without console output
+     */
+    private static void computeMetricsQuietly() {
+        for (int t = 0; t < TARGETS.length; t++) {
+            DataLoader.Dataset[] splits = DataLoader.splitTrainValTest(fullDatasets[t], TRAIN_RATIO, VAL_RATIO, false);
+            metrics[t] = evaluateModelOnAllSets(models[t], splits[0], splits[1], splits[2], false);
+        }
+    }
+    
     private static PerformanceMetrics evaluateModelOnAllSets(LinearRegression model,
                                                              DataLoader.Dataset train,
                                                              DataLoader.Dataset val,
                                                              DataLoader.Dataset test) {
-        System.out.println(">>> " + model.getModelName() + " <<<");
+        return evaluateModelOnAllSets(model, train, val, test, true);
+    }
+    
+    private static PerformanceMetrics evaluateModelOnAllSets(LinearRegression model,
+                                                             DataLoader.Dataset train,
+                                                             DataLoader.Dataset val,
+                                                             DataLoader.Dataset test,
+                                                             boolean verbose) {
         
         // Train performance
         double[] y_train = train.getYPrimitive();
-        double trainMSE = model.calculateMSE(train.X, y_train);
+        double trainMSE = model.calculateMSE(train.matrix, y_train);
         double trainRMSE = Math.sqrt(trainMSE);
-        double trainR2 = model.calculateR2(train.X, y_train);
-        double trainMAPE = calculateMAPE(model, train.X, y_train);
+        double trainR2 = model.calculateR2(train.matrix, y_train);
+        double trainMAPE = calculateMAPE(model, train.matrix, y_train);
         
         // Validation performance
         double[] y_val = val.getYPrimitive();
-        double valMSE = model.calculateMSE(val.X, y_val);
+        double valMSE = model.calculateMSE(val.matrix, y_val);
         double valRMSE = Math.sqrt(valMSE);
-        double valR2 = model.calculateR2(val.X, y_val);
-        double valMAPE = calculateMAPE(model, val.X, y_val);
+        double valR2 = model.calculateR2(val.matrix, y_val);
+        double valMAPE = calculateMAPE(model, val.matrix, y_val);
         
         // Test performance
         double[] y_test = test.getYPrimitive();
-        double testMSE = model.calculateMSE(test.X, y_test);
+        double testMSE = model.calculateMSE(test.matrix, y_test);
         double testRMSE = Math.sqrt(testMSE);
-        double testR2 = model.calculateR2(test.X, y_test);
-        double testMAPE = calculateMAPE(model, test.X, y_test);
+        double testR2 = model.calculateR2(test.matrix, y_test);
+        double testMAPE = calculateMAPE(model, test.matrix, y_test);
+        
+        if (!verbose) {
+            return new PerformanceMetrics(trainR2, trainMAPE, valR2, valMAPE, testR2, testMAPE);
+        }
         
+        System.out.println(">>> " + model.getModelName() + " <<<");
         System.out.println("\nTrain Performance (Hiệu suất Train):");
         System.out.printf("  MSE:  %.6f\n", trainMSE);
         System.out.printf("  RMSE: %.6f\n", trainRMSE);
@@ -253,7 +1210,7 @@ public class SpendingPrediction {
         return new PerformanceMetrics(trainR2, trainMAPE, valR2, valMAPE, testR2, testMAPE);
     }
     
-    private static double calculateMAPE(LinearRegression model, double[][] X, double[] y) {
+    private static double calculateMAPE(LinearRegression model, FeatureMatrix X, double[] y) {
         double[] predictions = model.predict(X);
         double mape = 0;
         int validCount = 0;
@@ -268,9 +1225,7 @@ public class SpendingPrediction {
         return validCount > 0 ? (mape / validCount) * 100 : 0;
     }
     
-    private static void interactivePrediction() {
-        Scanner scanner = new Scanner(System.in);
-        
+    private static void interactivePrediction(Scanner scanner) {
         while (true) {
             System.out.println();
             System.out.println("=".repeat(80));
@@ -297,6 +1252,103 @@ public class SpendingPrediction {
         scanner.close();
     }
     
+    /**
+     * Start consuming transaction events into the live feature store
+     */
+    private static void startLiveIngestion() throws IOException {
+        liveStore = new LiveFeatureStore();
+        liveScales = computeLiveScales();
+        TransactionStream stream = new TransactionStream(liveStore);
+        System.out.println("=".repeat(80));
+        System.out.println("LIVE TRANSACTION INGESTION (NHẬN GIAO DỊCH TRỰC TIẾP)");
+        System.out.println("=".repeat(80));
+        if (!LIVE_TAIL.isEmpty()) {
+            stream.tail(new File(LIVE_TAIL));
+            System.out.println("Following: " + LIVE_TAIL);
+        }
+        if (LIVE_PORT > 0) {
+            stream.listen(LIVE_PORT);
+            System.out.println("Listening: 127.0.0.1:" + LIVE_PORT);
+        }
+        System.out.println("Live columns (Cột cập nhật trực tiếp): " + String.join(", ", liveScales.keySet()));
+        System.out.println("=".repeat(80));
+        System.out.println();
+    }
+    
+    /**
+     * Raw range of every column the live store maintains, so a live value can
+     * be min-max scaled like the training data: from the raw dataset when it
+     * exists, else the target scalers, with shares taken as already in [0, 1]
+     */
+    private static Map<String, double[]> computeLiveScales() throws IOException {
+        List<String> columns = new ArrayList<>(Arrays.asList("Total_Monthly_Spend", "Frequency_Total",
+                                                              "Pct_Night_Trans", "Days_Since_Last_Trans"));
+        for (String category : LiveFeatureStore.CATEGORIES) {
+            columns.addAll(Arrays.asList("Amount_" + category, "Frequency_" + category, "Pct_" + category));
+        }
+        
+        Map<String, double[]> scales = new LinkedHashMap<>();
+        if (new File(RAW_DATA_FILE).exists()) {
+            List<String> header;
+            try (BufferedReader br = new BufferedReader(new FileReader(RAW_DATA_FILE))) {
+                header = Arrays.asList(br.readLine().split(","));
+            }
+            columns.removeIf(column -> !header.contains(column));
+            Map<String, StreamingStats> stats = DataLoader.scanColumnStats(RAW_DATA_FILE, columns.toArray(new String[0]));
+            for (String column : columns) {
+                StreamingStats s = stats.get(column);
+                if (s.getCount() > 0 && s.getMax() > s.getMin()) {
+                    scales.put(column, new double[] {s.getMin(), s.getMax()});
+                }
+            }
+            return scales;
+        }
+        for (String column : columns) {
+            SimpleScalerInfo.TargetScaler scaler = scalerInfo.getScaler(column);
+            if (scaler != null) {
+                scales.put(column, new double[] {scaler.min, scaler.max});
+            } else if (column.startsWith("Pct_")) {
+                scales.put(column, new double[] {0.0, 1.0});
+            }
+        }
+        return scales;
+    }
+    
+    /**
+     * Live aggregates of an account for the target month, or null
+     */
+    private static LiveFeatureStore.Snapshot liveSnapshot(int accountKey) {
+        if (liveStore == null) {
+            return null;
+        }
+        LiveFeatureStore.Snapshot live = liveStore.get(accountKey);
+        return live != null && live.year == TARGET_YEAR && live.month == TARGET_MONTH ? live : null;
+    }
+    
+    /**
+     * Target-month features of an account with the live columns replaced by
+     * the scaled live aggregates (static attributes come from the dataset row)
+     */
+    private static double[] liveFeatures(int t, int accountKey, LiveFeatureStore.Snapshot live) {
+        DataLoader.Dataset dataset = fullDatasets[t];
+        double[] features = findFeatures(dataset, accountKey, TARGET_YEAR, TARGET_MONTH);
+        if (features == null) {
+            features = findFeatures(dataset, accountKey, TARGET_YEAR, TARGET_MONTH - 1);
+        }
+        if (features == null || dataset.featureNames == null) {
+            return features;
+        }
+        features = features.clone(); // Dense getRow shares the stored row
+        for (int j = 0; j < features.length; j++) {
+            double[] scale = liveScales.get(dataset.featureNames[j]);
+            double value = live.value(dataset.featureNames[j]);
+            if (scale != null && !Double.isNaN(value)) {
+                features[j] = (value - scale[0]) / (scale[1] - scale[0]);
+            }
+        }
+        return features;
+    }
+    
     private static void predictForAccount(int accountKey) {
         System.out.println();
         System.out.println("=".repeat(80));
@@ -306,77 +1358,68 @@ public class SpendingPrediction {
         System.out.println("Tháng dự báo (Target month): " + TARGET_YEAR + "/" + TARGET_MONTH);
         System.out.println("=".repeat(80));
         
-        boolean found = false;
-        
-        // Find data for this account
-        // Get prediction features for December 2025
-        double[] features1 = findFeatures(fullDataset1, accountKey, TARGET_YEAR, TARGET_MONTH);
-        double[] features2 = findFeatures(fullDataset2, accountKey, TARGET_YEAR, TARGET_MONTH);
-        double[] features3 = findFeatures(fullDataset3, accountKey, TARGET_YEAR, TARGET_MONTH);
-        
-        // Get previous month data (November 2025)
-        double prevValue1 = findPreviousValue(fullDataset1, accountKey, TARGET_YEAR, TARGET_MONTH - 1);
-        double prevValue2 = findPreviousValue(fullDataset2, accountKey, TARGET_YEAR, TARGET_MONTH - 1);
-        double prevValue3 = findPreviousValue(fullDataset3, accountKey, TARGET_YEAR, TARGET_MONTH - 1);
-        
-        if (features1 != null) {
-            found = true;
-            double predNorm1 = model1.predictSingle(features1);
-            double predReal1 = scalerInfo.denormalize("Total_Monthly_Spend", predNorm1);
-            double prevReal1 = scalerInfo.denormalize("Total_Monthly_Spend", prevValue1);
-            
-            System.out.println("\n[1] TOTAL MONTHLY SPEND (TỔNG CHI TIÊU HÀNG THÁNG)");
-            System.out.println("-".repeat(80));
-            System.out.printf("  Tháng trước (11/2025):     %,.0f VND\n", prevReal1);
-            System.out.printf("  Dự báo (12/2025):          %,.0f VND\n", predReal1);
-            
-            double change1 = predReal1 - prevReal1;
-            double changePct1 = prevReal1 > 0 ? (change1 / prevReal1) * 100 : 0;
-            String trend1 = change1 >= 0 ? "Tăng ↑" : "Giảm ↓";
-            System.out.printf("  Thay đổi:                  %s %,.0f VND (%.2f%%)\n", 
-                             trend1, Math.abs(change1), Math.abs(changePct1));
-            
-            printConfidence("Total Spend", metrics1);
+        // Live events take precedence; otherwise served from the prediction
+        // table when available (no dataset or model math)
+        LiveFeatureStore.Snapshot live = liveSnapshot(accountKey);
+        PredictionTable table = live == null ? predictionTable : null;
+        int row = -1;
+        if (table != null) {
+            row = table.find(accountKey);
         }
-        
-        if (features2 != null) {
-            found = true;
-            double predNorm2 = model2.predictSingle(features2);
-            double predReal2 = scalerInfo.denormalize("Frequency_Total", predNorm2);
-            double prevReal2 = scalerInfo.denormalize("Frequency_Total", prevValue2);
-            
-            System.out.println("\n[2] TRANSACTION FREQUENCY (TẦN SUẤT GIAO DỊCH)");
-            System.out.println("-".repeat(80));
-            System.out.printf("  Tháng trước (11/2025):     %.0f lần\n", prevReal2);
-            System.out.printf("  Dự báo (12/2025):          %.0f lần\n", predReal2);
-            
-            double change2 = predReal2 - prevReal2;
-            double changePct2 = prevReal2 > 0 ? (change2 / prevReal2) * 100 : 0;
-            String trend2 = change2 >= 0 ? "Tăng ↑" : "Giảm ↓";
-            System.out.printf("  Thay đổi:                  %s %.0f lần (%.2f%%)\n", 
-                             trend2, Math.abs(change2), Math.abs(changePct2));
-            
-            printConfidence("Frequency", metrics2);
+        if (table == null) {
+            ensureDataLoaded();
         }
+        if (live != null) {
+            System.out.printf("Live: %d giao dịch trong tháng (transactions this month), giao dịch cuối (last): %s\n",
+                             live.transactions, live.lastTransaction);
+        }
+        boolean found = false;
         
-        if (features3 != null) {
+        for (int t = 0; t < TARGETS.length; t++) {
+            Target target = TARGETS[t];
+            double predReal;
+            double prevReal;
+            
+            if (table != null) {
+                if (row < 0 || Double.isNaN(table.prediction(row, t))) {
+                    continue;
+                }
+                predReal = table.prediction(row, t);
+                prevReal = table.previous(row, t);
+            } else {
+                // Prediction features for December 2025 (live aggregates when events arrived)
+                double[] features = live != null 
+                    ? liveFeatures(t, accountKey, live)
+                    : findFeatures(fullDatasets[t], accountKey, TARGET_YEAR, TARGET_MONTH);
+                if (features == null) {
+                    continue;
+                }
+                
+                // Previous month data (November 2025)
+                double prevValue = findPreviousValue(fullDatasets[t], accountKey, TARGET_YEAR, TARGET_MONTH - 1);
+                double predNorm = models[t].predictSingle(features);
+                predReal = scalerInfo.denormalize(target.column, predNorm);
+                prevReal = scalerInfo.denormalize(target.column, prevValue);
+            }
             found = true;
-            double predNorm3 = model3.predictSingle(features3);
-            double predReal3 = scalerInfo.denormalize("Amount_Entertainment", predNorm3);
-            double prevReal3 = scalerInfo.denormalize("Amount_Entertainment", prevValue3);
             
-            System.out.println("\n[3] ENTERTAINMENT SPENDING (CHI TIÊU GIẢI TRÍ)");
+            System.out.println("\n[" + (t + 1) + "] " + target.title.toUpperCase());
             System.out.println("-".repeat(80));
-            System.out.printf("  Tháng trước (11/2025):     %,.0f VND\n", prevReal3);
-            System.out.printf("  Dự báo (12/2025):          %,.0f VND\n", predReal3);
+            System.out.printf("  Tháng trước (11/2025):     %s\n", target.format(prevReal));
+            System.out.printf("  Dự báo (12/2025):          %s\n", target.format(predReal));
             
-            double change3 = predReal3 - prevReal3;
-            double changePct3 = prevReal3 > 0 ? (change3 / prevReal3) * 100 : 0;
-            String trend3 = change3 >= 0 ? "Tăng ↑" : "Giảm ↓";
-            System.out.printf("  Thay đổi:                  %s %,.0f VND (%.2f%%)\n", 
-                             trend3, Math.abs(change3), Math.abs(changePct3));
+            double change = predReal - prevReal;
+            double changePct = prevReal > 0 ? (change / prevReal) * 100 : 0;
+            String trend = change >= 0 ? "Tăng ↑" : "Giảm ↓";
+            System.out.printf("  Thay đổi:                  %s %s (%.2f%%)\n", 
+                             trend, target.format(Math.abs(change)), Math.abs(changePct));
             
-            printConfidence("Entertainment", metrics3);
+            PerformanceMetrics confidence = availableMetrics(t);
+            if (confidence != null) {
+                printConfidence(target.column, confidence);
+            } else {
+                System.out.println("\n  ⏳ Confidence pending (Đang đánh giá độ tin cậy...)");
+            }
         }
         
         if (!found) {
@@ -387,25 +1430,13 @@ public class SpendingPrediction {
     }
     
     private static double[] findFeatures(DataLoader.Dataset dataset, int accountKey, int year, int month) {
-        for (int i = 0; i < dataset.accountKeys.length; i++) {
-            if (dataset.accountKeys[i] == accountKey && 
-                dataset.years[i] == year && 
-                dataset.months[i] == month) {
-                return dataset.X[i];
-            }
-        }
-        return null;
+        int idx = dataset.indexOf(accountKey, year, month);
+        return idx >= 0 ? dataset.matrix.getRow(idx) : null;
     }
     
     private static double findPreviousValue(DataLoader.Dataset dataset, int accountKey, int year, int month) {
-        for (int i = 0; i < dataset.accountKeys.length; i++) {
-            if (dataset.accountKeys[i] == accountKey && 
-                dataset.years[i] == year && 
-                dataset.months[i] == month) {
-                return dataset.y[i];
-            }
-        }
-        return 0.0;
+        int idx = dataset.indexOf(accountKey, year, month);
+        return idx >= 0 && dataset.y[idx] != null ? dataset.y[idx] : 0.0;
     }
     
     private static void printConfidence(String modelName, PerformanceMetrics metrics) {
@@ -458,5 +1489,49 @@ public class SpendingPrediction {
             this.testR2 = testR2;
             this.testMAPE = testMAPE;
         }
+        
+        double[] toArray() {
+            return new double[] {trainR2, trainMAPE, valR2, valMAPE, testR2, testMAPE};
+        }
+        
+        static PerformanceMetrics fromArray(double[] values) {
+            return new PerformanceMetrics(values[0], values[1], values[2], 
+                                          values[3], values[4], values[5]);
+        }
+    }
+    
+    private static String[] modelFiles() {
+        String[] files = new String[TARGETS.length];
+        for (int t = 0; t < TARGETS.length; t++) {
+            files[t] = TARGETS[t].modelFile;
+        }
+        return files;
+    }
+    
+    /**
+     * One prediction target: target column, its dataset and model file,
+     * display title and value format
+     */
+    static class Target {
+        final String column;
+        final String dataFile;
+        final String modelFile;
+        final String title;
+        final String valueFormat;
+        final boolean normalized; // Target scaled to [0, 1] in the data file
+        
+        Target(String column, String dataFile, String modelFile, String title, String valueFormat,
+               boolean normalized) {
+            this.column = column;
+            this.dataFile = dataFile;
+            this.modelFile = modelFile;
+            this.title = title;
+            this.valueFormat = valueFormat;
+            this.normalized = normalized;
+        }
+        
+        String format(double value) {
+            return String.format(valueFormat, value);
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,286 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Forward/backward stepwise feature selection on precomputed Gram matrices
+ *
+ * X^T X of the training rows is computed once. The ridge system of the
+ * selected columns is kept as a Cholesky factor L (L L^T = A_SS + λI):
+ *   adding column j    extends L by one row (l = L^-1 a_Sj, d = √(a_jj + λ - l·l)), O(k²)
+ *   removing column q  deletes row q of L and restores the trailing block
+ *                      with a rank-one Cholesky update, O(k²)
+ * Each candidate is scored by its validation SSE, computed from the
+ * validation Gram matrix without touching the rows. The bias is always kept.
+ */
+public class StepwiseSelector {
+    private static final double MIN_GAIN = 1e-4;  // Relative validation SSE improvement required per step
+    private static final double COLLINEAR = 1e-10; // Pivot (relative to a_jj) below which a column adds nothing
+
+    private final double[][] A;   // Training X^T X + λI (bias first)
+    private final double[] b;     // Training X^T y
+    private final double[][] V;   // Validation X^T X, X^T y, y^T y and row count
+    private final double[] v;
+    private final double vyy;
+    private final long validationRows;
+    private final int d;
+
+    // Current selection: active[0..k) (positions in A, active[0] = bias) and its factor
+    private int[] active;
+    private int k;
+    private double[][] L;
+
+    /**
+     * One accepted step
+     */
+    public static class Step {
+        public final boolean added;
+        public final int feature;
+        public final double valRMSE;
+
+        Step(boolean added, int feature, double valRMSE) {
+            this.added = added;
+            this.feature = feature;
+            this.valRMSE = valRMSE;
+        }
+    }
+
+    public static class Result {
+        public boolean[] mask;       // Selected features
+        public int[] selected;       // Selected feature indices, in order of addition
+        public double[] theta;       // Ridge solution on the selected features, 0 for the others (bias first)
+        public double valRMSE;       // Validation RMSE of the selection
+        public double fullValRMSE;   // Validation RMSE with every feature
+        public List<Step> steps = new ArrayList<>();
+
+        public void print(String modelName, String[] featureNames) {
+            System.out.println("Stepwise feature selection (" + modelName + "):");
+            for (Step step : steps) {
+                System.out.printf("  %s %-28s val RMSE = %.6f\n", step.added ? "+" : "-",
+                                 name(featureNames, step.feature), step.valRMSE);
+            }
+            System.out.printf("Selected %d / %d features, val RMSE %.6f (all features: %.6f)\n",
+                             selected.length, mask.length, valRMSE, fullValRMSE);
+        }
+
+        private static String name(String[] featureNames, int feature) {
+            return featureNames != null ? featureNames[feature] : "x" + feature;
+        }
+    }
+
+    public StepwiseSelector(GramMatrix train, GramMatrix validation, double lambda) {
+        if (train.getDim() != validation.getDim()) {
+            throw new IllegalArgumentException("Gram dimension mismatch: " + train.getDim() + " vs " + validation.getDim());
+        }
+        this.A = train.getXtX();
+        this.b = train.getXty();
+        this.V = validation.getXtX();
+        this.v = validation.getXty();
+        this.vyy = validation.getYty();
+        this.validationRows = validation.getCount();
+        this.d = train.getDim();
+        for (int i = 0; i < d; i++) {
+            A[i][i] += lambda;
+        }
+    }
+
+    /**
+     * Run forward steps, each followed by backward steps while a removal
+     * improves the validation error, until no move gains MIN_GAIN
+     */
+    public Result select() {
+        active = new int[d];
+        L = new double[d][d];
+        k = 1;
+        active[0] = 0;
+        L[0][0] = Math.sqrt(A[0][0]);
+        double currentSSE = validationSSE(L, active, k);
+
+        Result result = new Result();
+        boolean[] inModel = new boolean[d];
+        inModel[0] = true;
+        int maxSteps = 4 * d;
+        for (int iteration = 0; iteration < maxSteps; iteration++) {
+            // Forward: best single addition
+            int bestAdd = -1;
+            double bestSSE = currentSSE;
+            double[] row = new double[d];
+            for (int j = 1; j < d; j++) {
+                if (inModel[j] || !borderRow(j, row)) continue;
+                System.arraycopy(row, 0, L[k], 0, k + 1);
+                active[k] = j;
+                double sse = validationSSE(L, active, k + 1);
+                if (sse < bestSSE) {
+                    bestSSE = sse;
+                    bestAdd = j;
+                }
+            }
+            if (bestAdd < 0 || bestSSE > currentSSE * (1 - MIN_GAIN)) {
+                break;
+            }
+            borderRow(bestAdd, row);
+            System.arraycopy(row, 0, L[k], 0, k + 1);
+            active[k++] = bestAdd;
+            inModel[bestAdd] = true;
+            currentSSE = bestSSE;
+            result.steps.add(new Step(true, bestAdd - 1, rmse(currentSSE)));
+
+            // Backward: drop columns that no longer help (never the one just added)
+            while (k > 2) {
+                int bestRemove = -1;
+                double bestRemoveSSE = Double.MAX_VALUE;
+                double[][] candidate = new double[d][d];
+                int[] candidateActive = new int[d];
+                for (int q = 1; q < k - 1; q++) {
+                    removeColumn(L, active, k, q, candidate, candidateActive);
+                    double sse = validationSSE(candidate, candidateActive, k - 1);
+                    if (sse < bestRemoveSSE) {
+                        bestRemoveSSE = sse;
+                        bestRemove = q;
+                    }
+                }
+                if (bestRemove < 0 || bestRemoveSSE > currentSSE * (1 - MIN_GAIN)) {
+                    break;
+                }
+                int feature = active[bestRemove];
+                removeColumn(L, active, k, bestRemove, candidate, candidateActive);
+                L = candidate;
+                active = candidateActive;
+                k--;
+                inModel[feature] = false;
+                currentSSE = bestRemoveSSE;
+                result.steps.add(new Step(false, feature - 1, rmse(currentSSE)));
+            }
+        }
+
+        double[] thetaS = solve(L, active, k);
+        result.theta = new double[d];
+        result.mask = new boolean[d - 1];
+        result.selected = new int[k - 1];
+        for (int i = 0; i < k; i++) {
+            result.theta[active[i]] = thetaS[i];
+            if (i > 0) {
+                result.mask[active[i] - 1] = true;
+                result.selected[i - 1] = active[i] - 1;
+            }
+        }
+        result.valRMSE = rmse(currentSSE);
+        result.fullValRMSE = rmse(fullValidationSSE());
+        return result;
+    }
+
+    /**
+     * New last row of L for column j: l = L^-1 A[S][j], pivot √(a_jj - l·l)
+     * @return false if j is (numerically) a combination of the selected columns
+     */
+    private boolean borderRow(int j, double[] row) {
+        double norm = 0;
+        for (int i = 0; i < k; i++) {
+            double sum = A[active[i]][j];
+            for (int p = 0; p < i; p++) {
+                sum -= L[i][p] * row[p];
+            }
+            row[i] = sum / L[i][i];
+            norm += row[i] * row[i];
+        }
+        double pivot = A[j][j] - norm;
+        if (pivot <= COLLINEAR * A[j][j]) {
+            return false;
+        }
+        row[k] = Math.sqrt(pivot);
+        return true;
+    }
+
+    /**
+     * Factor of the selection without position q: rows above q are kept, and
+     * the trailing block absorbs the deleted column by a rank-one update
+     */
+    private void removeColumn(double[][] from, int[] fromActive, int size, int q,
+                              double[][] to, int[] toActive) {
+        for (int i = 0, r = 0; i < size; i++) {
+            if (i == q) continue;
+            toActive[r] = fromActive[i];
+            for (int c = 0, cc = 0; c < size && c <= i; c++) {
+                if (c == q) continue;
+                to[r][cc++] = from[i][c];
+            }
+            r++;
+        }
+        int n = size - 1;
+        double[] x = new double[n];
+        for (int i = q; i < n; i++) {
+            x[i] = from[i + 1][q];
+        }
+        for (int c = q; c < n; c++) {
+            double diag = to[c][c];
+            double r = Math.hypot(diag, x[c]);
+            double cos = r / diag;
+            double sin = x[c] / diag;
+            to[c][c] = r;
+            for (int i = c + 1; i < n; i++) {
+                to[i][c] = (to[i][c] + sin * x[i]) / cos;
+                x[i] = cos * x[i] - sin * to[i][c];
+            }
+        }
+    }
+
+    /**
+     * θ_S from L L^T θ_S = b_S
+     */
+    private double[] solve(double[][] factor, int[] cols, int size) {
+        double[] z = new double[size];
+        for (int i = 0; i < size; i++) {
+            double sum = b[cols[i]];
+            for (int p = 0; p < i; p++) {
+                sum -= factor[i][p] * z[p];
+            }
+            z[i] = sum / factor[i][i];
+        }
+        for (int i = size - 1; i >= 0; i--) {
+            double sum = z[i];
+            for (int p = i + 1; p < size; p++) {
+                sum -= factor[p][i] * z[p];
+            }
+            z[i] = sum / factor[i][i];
+        }
+        return z;
+    }
+
+    /**
+     * Validation SSE of the ridge solution on the selected columns, O(k²):
+     * θ_S^T V_SS θ_S - 2 θ_S · v_S + y^T y
+     */
+    private double validationSSE(double[][] factor, int[] cols, int size) {
+        double[] theta = solve(factor, cols, size);
+        double sse = vyy;
+        for (int i = 0; i < size; i++) {
+            double[] row = V[cols[i]];
+            double quad = 0;
+            for (int j = 0; j < size; j++) {
+                quad += row[cols[j]] * theta[j];
+            }
+            sse += theta[i] * (quad - 2 * v[cols[i]]);
+        }
+        return Math.max(0, sse);
+    }
+
+    private double fullValidationSSE() {
+        double[] flat = DenseKernels.flatten(A);
+        double[] theta = DenseKernels.choleskySolve(flat, b, d);
+        if (theta == null) {
+            return Double.NaN;
+        }
+        double sse = vyy;
+        for (int i = 0; i < d; i++) {
+            double quad = 0;
+            for (int j = 0; j < d; j++) {
+                quad += V[i][j] * theta[j];
+            }
+            sse += theta[i] * (quad - 2 * v[i]);
+        }
+        return Math.max(0, sse);
+    }
+
+    private double rmse(double sse) {
+        return Math.sqrt(sse / Math.max(1, validationRows));
+    }
+}
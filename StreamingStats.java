@@ -0,0 +1,77 @@
+import java.io.Serializable;
+
+/**
+ * One-pass column statistics: count, min, max, mean and variance (Welford)
+ * plus a KLL sketch for the median. Statistics of separate chunks can be
+ * merged (Chan et al. parallel variance), so chunks can be scanned in parallel.
+ */
+public class StreamingStats implements Serializable {
+    private static final long serialVersionUID = 1L; // Stored in the segment store manifest
+
+    private long count = 0;
+    private double mean = 0;
+    private double m2 = 0;  // Sum of squared deviations from the mean
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+    private final QuantileSketch sketch = new QuantileSketch();
+
+    public void add(double value) {
+        count++;
+        double delta = value - mean;
+        mean += delta / count;
+        m2 += delta * (value - mean);
+        if (value < min) min = value;
+        if (value > max) max = value;
+        sketch.add(value);
+    }
+
+    public void merge(StreamingStats other) {
+        if (other.count == 0) return;
+        if (count == 0) {
+            count = other.count;
+            mean = other.mean;
+            m2 = other.m2;
+        } else {
+            long total = count + other.count;
+            double delta = other.mean - mean;
+            mean += delta * other.count / total;
+            m2 += other.m2 + delta * delta * ((double) count * other.count / total);
+            count = total;
+        }
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        sketch.merge(other.sketch);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMean() {
+        return mean;
+    }
+
+    public double getVariance() {
+        return count > 1 ? m2 / (count - 1) : 0;
+    }
+
+    public double getStd() {
+        return Math.sqrt(getVariance());
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    public double getMedian() {
+        return sketch.quantile(0.5);
+    }
+
+    public double getQuantile(double q) {
+        return sketch.quantile(q);
+    }
+}
@@ -0,0 +1,133 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local stand-ins for an event broker, feeding a LiveFeatureStore
+ *   tail(file)    follow a file of event lines as it grows (like tail -F)
+ *   listen(port)  accept event lines on a loopback TCP socket, one thread per connection
+ * Both run on daemon threads; invalid lines are counted and skipped.
+ */
+public class TransactionStream {
+    private static final long POLL_MILLIS = 200;
+
+    private final LiveFeatureStore store;
+    private final AtomicLong invalid = new AtomicLong();
+
+    public TransactionStream(LiveFeatureStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Follow a file from its beginning; restarts from the top if the file is truncated
+     */
+    public void tail(File file) {
+        Thread thread = new Thread(() -> {
+            long offset = 0;
+            StringBuilder partial = new StringBuilder();
+            byte[] buffer = new byte[1 << 16];
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    if (!file.exists() || file.length() == offset) {
+                        Thread.sleep(POLL_MILLIS);
+                        continue;
+                    }
+                    if (file.length() < offset) {
+                        offset = 0;
+                        partial.setLength(0);
+                    }
+                    try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+                        raf.seek(offset);
+                        int read;
+                        while ((read = raf.read(buffer)) > 0) {
+                            offset += read;
+                            partial.append(new String(buffer, 0, read, StandardCharsets.ISO_8859_1)); // Event lines are ASCII
+                            consumeLines(partial);
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                } catch (IOException e) {
+                    System.err.println("Warning: reading " + file + ": " + e.getMessage());
+                    try {
+                        Thread.sleep(POLL_MILLIS);
+                    } catch (InterruptedException ie) {
+                        return;
+                    }
+                }
+            }
+        }, "tail-" + file.getName());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Accept connections on 127.0.0.1:port
+     */
+    public void listen(int port) throws IOException {
+        ServerSocket server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(() -> {
+            while (!server.isClosed()) {
+                try {
+                    Socket socket = server.accept();
+                    Thread reader = new Thread(() -> readSocket(socket), "events-" + socket.getPort());
+                    reader.setDaemon(true);
+                    reader.start();
+                } catch (IOException e) {
+                    if (!server.isClosed()) {
+                        System.err.println("Warning: event socket: " + e.getMessage());
+                    }
+                }
+            }
+        }, "events-" + port);
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    private void readSocket(Socket socket) {
+        try (BufferedReader in = new BufferedReader(
+                new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                accept(line);
+            }
+        } catch (IOException e) {
+            System.err.println("Warning: event connection closed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Apply the complete lines in the buffer and keep the unterminated tail
+     */
+    private void consumeLines(StringBuilder buffer) {
+        int start = 0;
+        for (int i = 0; i < buffer.length(); i++) {
+            if (buffer.charAt(i) == '\n') {
+                accept(buffer.substring(start, i));
+                start = i + 1;
+            }
+        }
+        buffer.delete(0, start);
+    }
+
+    private void accept(String line) {
+        line = line.trim();
+        if (line.isEmpty() || line.startsWith("Account_Key")) {
+            return;
+        }
+        if (!store.accept(line)) {
+            invalid.incrementAndGet();
+        }
+    }
+
+    public long getInvalid() {
+        return invalid.get();
+    }
+}
@@ -0,0 +1,181 @@
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Walk-forward backtesting: train on months [t-w, t), score month t, for every t
+ *
+ * X^T X / X^T y are accumulated once per (Year, Month) block. The training
+ * window slides by adding the newest month's block and subtracting the one
+ * that drops out, so each step costs O(n²) for the update plus O(n³) for the
+ * solve instead of a full O(m·n²) refit.
+ */
+public class WalkForwardBacktester {
+    // Rebuild the window sum from the blocks every N steps to bound rounding drift
+    private static final int REFRESH_INTERVAL = 24;
+
+    private final DataLoader.Dataset dataset;
+    private final int windowMonths;
+    private final double lambda;
+
+    public WalkForwardBacktester(DataLoader.Dataset dataset, int windowMonths, double lambda) {
+        if (windowMonths < 1) {
+            throw new IllegalArgumentException("Window must be at least 1 month, got " + windowMonths);
+        }
+        this.dataset = dataset;
+        this.windowMonths = windowMonths;
+        this.lambda = lambda;
+    }
+
+    /**
+     * Run the backtest over every month that has a full window of history
+     */
+    public List<MonthResult> run() {
+        FeatureMatrix X = dataset.matrix;
+        int n = X.cols();
+
+        // One pass: Gram block and row list per calendar month (rows with a target only)
+        TreeMap<Integer, GramMatrix> blocks = new TreeMap<>();
+        Map<Integer, List<Integer>> monthRows = new TreeMap<>();
+        int[] cols = new int[n];
+        double[] values = new double[n];
+        for (int i = 0; i < X.rows(); i++) {
+            if (dataset.y[i] == null) continue;
+            int monthId = monthId(dataset.years[i], dataset.months[i]);
+            blocks.computeIfAbsent(monthId, k -> new GramMatrix(n))
+                  .add(X, i, dataset.y[i], cols, values);
+            monthRows.computeIfAbsent(monthId, k -> new ArrayList<>()).add(i);
+        }
+
+        List<MonthResult> results = new ArrayList<>();
+        if (blocks.isEmpty()) {
+            return results;
+        }
+
+        int first = blocks.firstKey();
+        int last = blocks.lastKey();
+
+        GramMatrix window = new GramMatrix(n);
+        LinearRegression model = new LinearRegression(dataset.targetCol);
+        model.setLambda(lambda);
+
+        int steps = 0;
+        for (int t = first + 1; t <= last; t++) {
+            // Slide: add month t-1, drop month t-w-1
+            GramMatrix added = blocks.get(t - 1);
+            GramMatrix dropped = blocks.get(t - windowMonths - 1);
+            if (added != null) window.merge(added);
+            if (dropped != null) window.subtract(dropped);
+
+            if (++steps % REFRESH_INTERVAL == 0) {
+                window = windowSum(blocks, t, n);
+            }
+
+            List<Integer> scoreRows = monthRows.get(t);
+            if (scoreRows == null || t - windowMonths < first || window.getCount() == 0) {
+                continue;
+            }
+
+            model.fitGram(window);
+            results.add(score(model, t, window.getCount(), scoreRows));
+        }
+        return results;
+    }
+
+    private GramMatrix windowSum(Map<Integer, GramMatrix> blocks, int t, int n) {
+        GramMatrix sum = new GramMatrix(n);
+        for (int month = t - windowMonths; month < t; month++) {
+            GramMatrix block = blocks.get(month);
+            if (block != null) sum.merge(block);
+        }
+        return sum;
+    }
+
+    private MonthResult score(LinearRegression model, int monthId, long trainRows, List<Integer> rows) {
+        FeatureMatrix X = dataset.matrix;
+        double[] theta = model.getTheta();
+
+        double yMean = 0;
+        for (int idx : rows) {
+            yMean += dataset.y[idx];
+        }
+        yMean /= rows.size();
+
+        double sse = 0, sst = 0, ape = 0;
+        int apeCount = 0;
+        for (int idx : rows) {
+            double actual = dataset.y[idx];
+            double error = actual - X.dotRow(idx, theta);
+            sse += error * error;
+            sst += (actual - yMean) * (actual - yMean);
+            if (Math.abs(actual) > 1e-6) {
+                ape += Math.abs(error / actual);
+                apeCount++;
+            }
+        }
+
+        return new MonthResult(monthId / 12, monthId % 12 + 1, trainRows, rows.size(),
+                               Math.sqrt(sse / rows.size()),
+                               sst > 0 ? 1 - sse / sst : Double.NaN,
+                               apeCount > 0 ? ape / apeCount * 100 : 0);
+    }
+
+    private static int monthId(int year, int month) {
+        return year * 12 + (month - 1);
+    }
+
+    /**
+     * Print per-month metrics
+     */
+    public static void printResults(String modelName, List<MonthResult> results) {
+        System.out.println(">>> " + modelName + " <<<");
+        System.out.printf("  %-8s %10s %8s %12s %10s %10s\n", "Month", "TrainRows", "Rows", "RMSE", "R²", "MAPE");
+        for (MonthResult r : results) {
+            System.out.printf("  %04d/%02d  %10d %8d %12.6f %9.2f%% %9.2f%%\n",
+                             r.year, r.month, r.trainRows, r.rows, r.rmse, r.r2 * 100, r.mape);
+        }
+    }
+
+    /**
+     * Write per-month metrics as CSV
+     */
+    public static void writeCsv(String filename, List<MonthResult> results) throws IOException {
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(filename))) {
+            writer.write("Year,Month,Train_Rows,Rows,RMSE,R2,MAPE");
+            writer.newLine();
+            for (MonthResult r : results) {
+                writer.write(r.year + "," + r.month + "," + r.trainRows + "," + r.rows + ","
+                             + r.rmse + "," + r.r2 + "," + r.mape);
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * Metrics for one scored month
+     */
+    public static class MonthResult {
+        public int year;
+        public int month;
+        public long trainRows;
+        public int rows;
+        public double rmse;
+        public double r2;
+        public double mape;
+
+        public MonthResult(int year, int month, long trainRows, int rows,
+                           double rmse, double r2, double mape) {
+            this.year = year;
+            this.month = month;
+            this.trainRows = trainRows;
+            this.rows = rows;
+            this.rmse = rmse;
+            this.r2 = r2;
+            this.mape = mape;
+        }
+    }
+}